@@ -0,0 +1,107 @@
+package ru.netology.cloudStorage.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.Filter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import ru.netology.cloudStorage.config.CurrentUserArgumentResolver;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.config.TokenAuthenticationFilter;
+import ru.netology.cloudStorage.controller.FileController;
+import ru.netology.cloudStorage.controller.ListController;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.service.BufferPool;
+import ru.netology.cloudStorage.service.FileDownloadService;
+import ru.netology.cloudStorage.service.FileListCache;
+import ru.netology.cloudStorage.service.FileListVersions;
+import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.service.TokenService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Полный путь запроса TokenAuthenticationFilter → контроллер через MockMvc, без сервлет-контейнера и БД.
+ * listFiles отдаёт список из кэша ответов, listFilesNotModified — 304 по If-None-Match.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AuthChainBenchmark {
+
+    private Path root;
+    private MockMvc mockMvc;
+    private String token;
+    private String listEtag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("chain-bench");
+        StorageProperties properties = Fixtures.properties(root);
+        FileRepository fileRepository = InMemoryRepositories.files();
+        FileListVersions fileListVersions = Fixtures.fileListVersions();
+        FileStorageService fileStorageService = Fixtures.fileStorageService(properties, fileRepository, fileListVersions);
+        TokenService tokenService = Fixtures.tokenService(properties, InMemoryRepositories.tokens(0));
+
+        User user = InMemoryRepositories.user(1L, "bench");
+        token = tokenService.generateToken(user);
+        for (int i = 0; i < 50; i++) {
+            fileStorageService.storeStream(new ByteArrayInputStream(new byte[1024]), "file-" + i + ".bin", user);
+        }
+
+        // В приложении контекст безопасности очищает SecurityContextHolderFilter
+        Filter clearContext = (request, response, chain) -> {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        };
+
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(
+                        new ListController(new FileListCache(fileStorageService, fileListVersions,
+                                new ObjectMapper(), properties, new SimpleMeterRegistry())),
+                        new FileController(fileStorageService,
+                                Fixtures.fileBatchService(properties, fileRepository, fileStorageService),
+                                new FileDownloadService(properties, Fixtures.metrics(properties),
+                                        Fixtures.transferThrottle(properties)),
+                                new BufferPool(properties)))
+                .setCustomArgumentResolvers(new CurrentUserArgumentResolver())
+                .addFilters(clearContext, new TokenAuthenticationFilter(tokenService))
+                .build();
+        listEtag = listFiles().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public MvcResult listFiles() throws Exception {
+        return mockMvc.perform(get("/list").param("limit", "10").header("auth-token", token)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult listFilesNotModified() throws Exception {
+        return mockMvc.perform(get("/list").param("limit", "10").header("auth-token", token)
+                .header(HttpHeaders.IF_NONE_MATCH, listEtag)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult downloadFile() throws Exception {
+        return mockMvc.perform(get("/file").param("filename", "file-7.bin").header("auth-token", token)).andReturn();
+    }
+}
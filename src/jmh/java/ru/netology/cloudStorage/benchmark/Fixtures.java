@@ -0,0 +1,107 @@
+package ru.netology.cloudStorage.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.AuthTokenRepository;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.service.AccessTracker;
+import ru.netology.cloudStorage.service.BlobService;
+import ru.netology.cloudStorage.service.BufferPool;
+import ru.netology.cloudStorage.service.CompressionPolicy;
+import ru.netology.cloudStorage.service.DiskIoLimiter;
+import ru.netology.cloudStorage.service.FileBatchService;
+import ru.netology.cloudStorage.service.FileListVersions;
+import ru.netology.cloudStorage.service.FileMetadataCache;
+import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.service.QuotaService;
+import ru.netology.cloudStorage.service.StorageLayout;
+import ru.netology.cloudStorage.service.StorageMetrics;
+import ru.netology.cloudStorage.service.TokenCache;
+import ru.netology.cloudStorage.service.TokenRevocationList;
+import ru.netology.cloudStorage.service.TokenService;
+import ru.netology.cloudStorage.service.TokenSigner;
+import ru.netology.cloudStorage.service.TransferThrottle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Сборка сервисов вручную, без Spring-контекста: бенчмарки меряют сам код, а не старт приложения.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static StorageProperties properties(Path root) {
+        StorageProperties properties = new StorageProperties();
+        properties.setPath(root.toString());
+        return properties;
+    }
+
+    static FileStorageService fileStorageService(StorageProperties properties, FileRepository fileRepository) {
+        return fileStorageService(properties, fileRepository, fileListVersions());
+    }
+
+    static FileStorageService fileStorageService(StorageProperties properties, FileRepository fileRepository,
+                                                 FileListVersions fileListVersions) {
+        DiskIoLimiter diskIoLimiter = new DiskIoLimiter(properties);
+        BlobService blobService = new BlobService(InMemoryRepositories.blobs(), properties, diskIoLimiter);
+        blobService.init();
+        FileStorageService service = new FileStorageService(
+                fileRepository, properties, new BufferPool(properties), blobService, diskIoLimiter,
+                metrics(properties), new CompressionPolicy(properties), new StorageLayout(properties),
+                new AccessTracker(fileRepository, properties),
+                new FileMetadataCache(properties, new SimpleMeterRegistry()), event -> { },
+                quotaService(properties), transferThrottle(properties), fileListVersions);
+        service.init();
+        return service;
+    }
+
+    static FileBatchService fileBatchService(StorageProperties properties, FileRepository fileRepository,
+                                             FileStorageService fileStorageService) {
+        DiskIoLimiter diskIoLimiter = new DiskIoLimiter(properties);
+        return new FileBatchService(fileRepository, fileStorageService,
+                new BlobService(InMemoryRepositories.blobs(), properties, diskIoLimiter), diskIoLimiter,
+                new FileMetadataCache(properties, new SimpleMeterRegistry()), event -> { },
+                quotaService(properties), fileListVersions(), properties);
+    }
+
+    static QuotaService quotaService(StorageProperties properties) {
+        return new QuotaService(InMemoryRepositories.usage(), InMemoryRepositories.users(),
+                TransactionOperations.withoutTransaction(), properties, new SimpleMeterRegistry());
+    }
+
+    static FileListVersions fileListVersions() {
+        return new FileListVersions(InMemoryRepositories.users());
+    }
+
+    static TransferThrottle transferThrottle(StorageProperties properties) {
+        return new TransferThrottle(properties, new SimpleMeterRegistry());
+    }
+
+    static TokenService tokenService(StorageProperties properties, AuthTokenRepository tokenRepository) {
+        TokenCache tokenCache = new TokenCache(properties, new SimpleMeterRegistry());
+        return new TokenService(tokenRepository, properties, tokenCache, metrics(properties),
+                new TokenSigner(properties), new TokenRevocationList(InMemoryRepositories.revocations(), properties));
+    }
+
+    static StorageMetrics metrics(StorageProperties properties) {
+        return new StorageMetrics(new SimpleMeterRegistry(), properties);
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
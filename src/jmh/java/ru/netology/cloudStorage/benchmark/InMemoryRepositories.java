@@ -0,0 +1,291 @@
+package ru.netology.cloudStorage.benchmark;
+
+import ru.netology.cloudStorage.entity.AuthToken;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.entity.UserUsage;
+import ru.netology.cloudStorage.repository.AuthTokenRepository;
+import ru.netology.cloudStorage.repository.BlobRepository;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.repository.FileRepositoryCustom;
+import ru.netology.cloudStorage.repository.TokenRevocationRepository;
+import ru.netology.cloudStorage.repository.UserRepository;
+import ru.netology.cloudStorage.repository.UserUsageRepository;
+import ru.netology.cloudStorage.util.FileCursor;
+import ru.netology.cloudStorage.util.FileSortKey;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Заглушки репозиториев в памяти, чтобы бенчмарки запускались без PostgreSQL.
+ * Реализованы только методы, которые вызываются на измеряемых путях.
+ */
+public final class InMemoryRepositories {
+
+    private InMemoryRepositories() {
+    }
+
+    public static FileRepository files() {
+        return proxy(FileRepository.class, new Files());
+    }
+
+    public static AuthTokenRepository tokens(long latencyMicros) {
+        return proxy(AuthTokenRepository.class, new Tokens(latencyMicros));
+    }
+
+    public static TokenRevocationRepository revocations() {
+        return proxy(TokenRevocationRepository.class, new Object());
+    }
+
+    public static BlobRepository blobs() {
+        return proxy(BlobRepository.class, new Object());
+    }
+
+    public static UserUsageRepository usage() {
+        return proxy(UserUsageRepository.class, new Usage());
+    }
+
+    public static UserRepository users() {
+        return proxy(UserRepository.class, new Users());
+    }
+
+    public static User user(long id, String login) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        user.setPassword("{noop}password");
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object delegate) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            int arity = args == null ? 0 : args.length;
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> "InMemory" + type.getSimpleName();
+                };
+            }
+            for (Method candidate : delegate.getClass().getDeclaredMethods()) {
+                if (candidate.getName().equals(method.getName()) && candidate.getParameterCount() == arity) {
+                    try {
+                        candidate.setAccessible(true);
+                        return candidate.invoke(delegate, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+        });
+    }
+
+    private record FileKey(Long userId, String filename) {
+    }
+
+    /**
+     * Файлы пользователя хранятся в отсортированном по (upload_date desc, id desc) множестве,
+     * что моделирует индекс idx_files_user_upload_date_id для основного порядка списка.
+     */
+    private static final class Files {
+
+        private static final Comparator<File> BY_DATE_DESC = Comparator
+                .comparing(File::getUploadDate, Comparator.reverseOrder())
+                .thenComparing(File::getId, Comparator.reverseOrder());
+
+        private final AtomicLong ids = new AtomicLong();
+        private final Map<FileKey, File> byKey = new ConcurrentHashMap<>();
+        private final Map<Long, FileKey> keysById = new ConcurrentHashMap<>();
+        private final Map<Long, NavigableSet<File>> byUser = new ConcurrentHashMap<>();
+
+        boolean existsByUserAndFilename(User user, String filename) {
+            return byKey.containsKey(new FileKey(user.getId(), filename));
+        }
+
+        Optional<File> findByUserAndFilename(User user, String filename) {
+            return Optional.ofNullable(byKey.get(new FileKey(user.getId(), filename)));
+        }
+
+        Object save(Object entity) {
+            File file = (File) entity;
+            if (file.getId() == null) {
+                file.setId(ids.incrementAndGet());
+            }
+            if (file.getUploadDate() == null) {
+                file.setUploadDate(LocalDateTime.now());
+            }
+            FileKey previous = keysById.put(file.getId(), new FileKey(file.getUser().getId(), file.getFilename()));
+            if (previous != null) {
+                byKey.remove(previous);
+            }
+            byKey.put(new FileKey(file.getUser().getId(), file.getFilename()), file);
+            byUser.computeIfAbsent(file.getUser().getId(), id -> new ConcurrentSkipListSet<>(BY_DATE_DESC)).add(file);
+            return file;
+        }
+
+        void delete(Object entity) {
+            File file = (File) entity;
+            FileKey key = keysById.remove(file.getId());
+            if (key != null) {
+                byKey.remove(key);
+                byUser.getOrDefault(key.userId(), new ConcurrentSkipListSet<>(BY_DATE_DESC)).remove(file);
+            }
+        }
+
+        void flush() {
+        }
+
+        int deleteOwned(Long id, User user) {
+            File file = byKey.get(keysById.getOrDefault(id, new FileKey(null, null)));
+            if (file == null || !file.getUser().getId().equals(user.getId())) {
+                return 0;
+            }
+            delete(file);
+            return 1;
+        }
+
+        List<FileRepositoryCustom.FileRow> findPage(Long userId, FileSortKey sortKey, boolean descending,
+                                                    FileCursor after, int limit) {
+            if (sortKey != FileSortKey.DATE || !descending) {
+                throw new UnsupportedOperationException("Only date desc ordering is modelled");
+            }
+            NavigableSet<File> files = byUser.getOrDefault(userId, new ConcurrentSkipListSet<>(BY_DATE_DESC));
+            if (after != null) {
+                File probe = new File();
+                probe.setId(after.id());
+                probe.setUploadDate((LocalDateTime) after.typedValue());
+                files = files.tailSet(probe, false);
+            }
+            List<FileRepositoryCustom.FileRow> rows = new ArrayList<>(limit);
+            for (File file : files) {
+                if (rows.size() == limit) {
+                    break;
+                }
+                rows.add(new FileRepositoryCustom.FileRow(
+                        file.getId(), file.getFilename(), file.getSize(), file.getUploadDate()));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Счётчики занятого места; условное списание под блокировкой строки моделируется compute.
+     */
+    private static final class Usage {
+
+        private final Map<Long, UserUsage> byUser = new ConcurrentHashMap<>();
+
+        int ensure(Long userId) {
+            return byUser.putIfAbsent(userId, usage(userId)) == null ? 1 : 0;
+        }
+
+        int charge(Long userId, long bytes, long files, long limit) {
+            int[] updated = {0};
+            byUser.computeIfPresent(userId, (id, usage) -> {
+                long quota = usage.getQuotaBytes() != null ? usage.getQuotaBytes() : limit;
+                if (usage.getUsedBytes() + bytes <= quota) {
+                    usage.setUsedBytes(usage.getUsedBytes() + bytes);
+                    usage.setFileCount(usage.getFileCount() + files);
+                    updated[0] = 1;
+                }
+                return usage;
+            });
+            return updated[0];
+        }
+
+        int add(Long userId, long bytes, long files) {
+            return byUser.computeIfPresent(userId, (id, usage) -> {
+                usage.setUsedBytes(Math.max(0, usage.getUsedBytes() + bytes));
+                usage.setFileCount(Math.max(0, usage.getFileCount() + files));
+                return usage;
+            }) != null ? 1 : 0;
+        }
+
+        Optional<UserUsage> findById(Object userId) {
+            return Optional.ofNullable(byUser.get((Long) userId));
+        }
+
+        private static UserUsage usage(Long userId) {
+            UserUsage usage = new UserUsage();
+            usage.setUserId(userId);
+            usage.setUpdatedAt(LocalDateTime.now());
+            return usage;
+        }
+    }
+
+    private static final class Users {
+
+        private final Map<Long, Long> listVersions = new ConcurrentHashMap<>();
+
+        Optional<Long> findListVersion(Long userId) {
+            return Optional.of(listVersions.getOrDefault(userId, 0L));
+        }
+
+        int incrementListVersion(Long userId) {
+            listVersions.merge(userId, 1L, Long::sum);
+            return 1;
+        }
+    }
+
+    /**
+     * Токены с искусственной задержкой, имитирующей сетевой round trip до БД.
+     */
+    private static final class Tokens {
+
+        private final long latencyNanos;
+        private final AtomicLong ids = new AtomicLong();
+        private final Map<String, AuthToken> byToken = new ConcurrentHashMap<>();
+
+        Tokens(long latencyMicros) {
+            this.latencyNanos = latencyMicros * 1000;
+        }
+
+        Optional<AuthToken> findByTokenWithUser(String token) {
+            roundTrip();
+            return Optional.ofNullable(byToken.get(token));
+        }
+
+        Object save(Object entity) {
+            roundTrip();
+            AuthToken token = (AuthToken) entity;
+            if (token.getId() == null) {
+                token.setId(ids.incrementAndGet());
+            }
+            byToken.put(token.getToken(), token);
+            return token;
+        }
+
+        int deleteByUser(User user) {
+            roundTrip();
+            int before = byToken.size();
+            byToken.values().removeIf(token -> token.getUser().getId().equals(user.getId()));
+            return before - byToken.size();
+        }
+
+        int deleteByToken(String token) {
+            roundTrip();
+            return byToken.remove(token) != null ? 1 : 0;
+        }
+
+        private void roundTrip() {
+            if (latencyNanos > 0) {
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+    }
+}
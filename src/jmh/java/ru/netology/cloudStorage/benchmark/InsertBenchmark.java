@@ -0,0 +1,124 @@
+package ru.netology.cloudStorage.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.netology.cloudStorage.config.HibernateConfig;
+import ru.netology.cloudStorage.entity.AuthToken;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.AuthTokenRepository;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Вставки в секунду через fileRepository.save и tokenRepository.save по rowsPerTransaction
+ * строк в транзакции. Единственный бенчмарк, которому нужна БД: меряются round trip-ы
+ * за id и JDBC-пакеты, которых в памяти нет. PostgreSQL берётся из docker-compose
+ * (-Dbench.jdbc.url, -Dbench.jdbc.user, -Dbench.jdbc.password), схему накатывает Liquibase.
+ * «До и после» сравниваются в одном запуске: ids=identity возвращает File и AuthToken
+ * прежнюю генерацию IDENTITY через identity-ids.orm.xml, ids=pooled — текущие последовательности.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InsertBenchmark {
+
+    @Param({"identity", "pooled"})
+    String ids;
+
+    @Param({"1", "50"})
+    int rowsPerTransaction;
+
+    private ConfigurableApplicationContext context;
+    private FileRepository fileRepository;
+    private AuthTokenRepository tokenRepository;
+    private TransactionTemplate transactionTemplate;
+    private User user;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Строки в секунду: JMH делит счётчик на время измерения.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration
+    @EntityScan("ru.netology.cloudStorage.entity")
+    @EnableJpaRepositories("ru.netology.cloudStorage.repository")
+    @Import(HibernateConfig.class)
+    static class Persistence {
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Persistence.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(
+                        "spring.datasource.url=" + System.getProperty("bench.jdbc.url",
+                                "jdbc:postgresql://localhost:5432/clouddb"),
+                        "spring.datasource.username=" + System.getProperty("bench.jdbc.user", "clouduser"),
+                        "spring.datasource.password=" + System.getProperty("bench.jdbc.password", "cloudpass"));
+        if ("identity".equals(ids)) {
+            builder.properties("spring.jpa.mapping-resources=identity-ids.orm.xml");
+        }
+        context = builder.run();
+        fileRepository = context.getBean(FileRepository.class);
+        tokenRepository = context.getBean(AuthTokenRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        User benchUser = new User();
+        benchUser.setLogin("bench-" + UUID.randomUUID().toString().substring(0, 8));
+        benchUser.setPassword("{noop}password");
+        user = context.getBean(UserRepository.class).save(benchUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        jdbc.update("DELETE FROM files WHERE user_id = ?", user.getId());
+        jdbc.update("DELETE FROM auth_tokens WHERE user_id = ?", user.getId());
+        jdbc.update("DELETE FROM users WHERE id = ?", user.getId());
+        context.close();
+    }
+
+    @Benchmark
+    public void saveFiles(Rows rows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rowsPerTransaction; i++) {
+                long n = counter.incrementAndGet();
+                fileRepository.save(new File("bench-" + n + ".bin", 0L, "bench/" + n, user));
+            }
+        });
+        rows.rows += rowsPerTransaction;
+    }
+
+    @Benchmark
+    public void saveTokens(Rows rows) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusHours(1);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rowsPerTransaction; i++) {
+                tokenRepository.save(new AuthToken(user, UUID.randomUUID().toString(), expiresAt));
+            }
+        });
+        rows.rows += rowsPerTransaction;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.netology.cloudStorage.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.netology.cloudStorage.DTO.FileListPage;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.util.FileSortKey;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость страницы listFiles в зависимости от числа файлов у пользователя.
+ * При keyset-пагинации она не должна расти вместе с accountSize.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ListFilesBenchmark {
+
+    @Param({"1000", "100000"})
+    int accountSize;
+
+    @Param({"10", "100"})
+    int limit;
+
+    private Path root;
+    private FileStorageService fileStorageService;
+    private User user;
+    private String middleCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("list-bench");
+        FileRepository fileRepository = InMemoryRepositories.files();
+        fileStorageService = Fixtures.fileStorageService(Fixtures.properties(root), fileRepository);
+        user = InMemoryRepositories.user(1L, "bench");
+
+        LocalDateTime base = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < accountSize; i++) {
+            File file = new File("file-" + i + ".bin", (long) i, "file-" + i + ".bin", user);
+            file.setUploadDate(base.plusNanos(i * 1000L));
+            fileRepository.save(file);
+        }
+
+        // Курсор из середины списка: глубокие страницы должны стоить столько же, сколько первая
+        String cursor = null;
+        for (int page = 0; page < accountSize / limit / 2; page++) {
+            cursor = fileStorageService.listFiles(user, limit, FileSortKey.DATE, null, cursor).getNextCursor();
+        }
+        middleCursor = cursor;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public FileListPage firstPage() {
+        return fileStorageService.listFiles(user, limit, FileSortKey.DATE, null, null);
+    }
+
+    @Benchmark
+    public FileListPage deepPage() {
+        return fileStorageService.listFiles(user, limit, FileSortKey.DATE, null, middleCursor);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.netology.cloudStorage.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.FileStorageService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пропускная способность store/load/delete в FileStorageService на реальном диске.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StorageBenchmark {
+
+    @Param({"4096", "1048576", "16777216"})
+    int fileSize;
+
+    private Path root;
+    private FileStorageService fileStorageService;
+    private User user;
+    private byte[] content;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("storage-bench");
+        fileStorageService = Fixtures.fileStorageService(Fixtures.properties(root), InMemoryRepositories.files());
+        user = InMemoryRepositories.user(1L, "bench");
+        content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        fileStorageService.storeStream(new ByteArrayInputStream(content), "existing.bin", user);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public long storeAndDelete() throws IOException {
+        String filename = "file-" + counter.incrementAndGet() + ".bin";
+        long size = fileStorageService.storeStream(new ByteArrayInputStream(content), filename, user);
+        fileStorageService.delete(filename, user);
+        return size;
+    }
+
+    @Benchmark
+    public void load(Blackhole blackhole) {
+        blackhole.consume(fileStorageService.load("existing.bin", user));
+    }
+}
@@ -0,0 +1,57 @@
+package ru.netology.cloudStorage.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.service.TokenService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * validateToken под конкурентной нагрузкой, с кэшем и без, при разной задержке до БД,
+ * и для подписанных токенов, которые проверяются без БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class TokenValidationBenchmark {
+
+    @Param({"true", "false"})
+    boolean cacheEnabled;
+
+    @Param({"0", "200"})
+    long dbLatencyMicros;
+
+    @Param({"false", "true"})
+    boolean stateless;
+
+    private Path root;
+    private TokenService tokenService;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("token-bench");
+        StorageProperties properties = Fixtures.properties(root);
+        properties.getToken().getCache().setEnabled(cacheEnabled);
+        properties.getToken().setStateless(stateless);
+        properties.getToken().setSecretKey("benchmark-secret-key-of-at-least-32-bytes");
+        tokenService = Fixtures.tokenService(properties, InMemoryRepositories.tokens(dbLatencyMicros));
+        token = tokenService.generateToken(InMemoryRepositories.user(1L, "bench"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Fixtures.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public Optional<UserDetails> validateToken() {
+        return tokenService.validateToken(token);
+    }
+}
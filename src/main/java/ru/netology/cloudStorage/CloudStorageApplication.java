@@ -4,6 +4,7 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(
         scanBasePackages = {
@@ -15,6 +16,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 )
 @EntityScan("ru.netology.cloudStorage.entity")
 @EnableJpaRepositories("ru.netology.cloudStorage.repository")
+@EnableScheduling
 public class CloudStorageApplication {
     public static void main(String[] args) {
         SpringApplication.run(CloudStorageApplication.class, args);
@@ -0,0 +1,17 @@
+package ru.netology.cloudStorage.DTO;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveRequest {
+    @NotEmpty
+    private List<String> filenames;
+    private String name;
+}
@@ -0,0 +1,35 @@
+package ru.netology.cloudStorage.DTO;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+    public static final String DELETE = "delete";
+    public static final String RENAME = "rename";
+
+    private String operation;
+    private String filename;
+    private String name;
+    private int status;
+    private String error;
+
+    public static BatchItemResult ok(String operation, String filename, String name) {
+        return new BatchItemResult(operation, filename, name, 200, null);
+    }
+
+    public static BatchItemResult failed(String operation, String filename, String name, int status, String error) {
+        return new BatchItemResult(operation, filename, name, status, error);
+    }
+
+    @JsonIgnore
+    public boolean isSucceeded() {
+        return status == 200;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.netology.cloudStorage.DTO;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchRequest {
+    private List<String> delete = new ArrayList<>();
+    @Valid
+    private List<Rename> rename = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rename {
+        @NotBlank
+        private String filename;
+        @NotBlank
+        @JsonAlias({"newName", "newFilename"})
+        private String name;
+    }
+}
@@ -0,0 +1,21 @@
+package ru.netology.cloudStorage.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchResponse {
+    private int succeeded;
+    private int failed;
+    private List<BatchItemResult> results;
+
+    public static BatchResponse of(List<BatchItemResult> results) {
+        int succeeded = (int) results.stream().filter(BatchItemResult::isSucceeded).count();
+        return new BatchResponse(succeeded, results.size() - succeeded, results);
+    }
+}
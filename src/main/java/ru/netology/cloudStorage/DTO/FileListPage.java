@@ -0,0 +1,15 @@
+package ru.netology.cloudStorage.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileListPage {
+    private List<FileInfoResponse> files;
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package ru.netology.cloudStorage.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String id;
+    private String filename;
+    private long size;
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> receivedChunks;
+}
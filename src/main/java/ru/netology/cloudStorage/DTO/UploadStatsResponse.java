@@ -0,0 +1,21 @@
+package ru.netology.cloudStorage.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatsResponse {
+    private String filename;
+    private long bytes;
+    private long millis;
+    private long bytesPerSecond;
+
+    public static UploadStatsResponse of(String filename, long bytes, long nanos) {
+        long millis = nanos / 1_000_000;
+        long bytesPerSecond = nanos > 0 ? bytes * 1_000_000_000L / nanos : 0;
+        return new UploadStatsResponse(filename, bytes, millis, bytesPerSecond);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.netology.cloudStorage.DTO;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Занятое место. quotaBytes и remainingBytes отсутствуют, если квота выключена.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UsageResponse {
+    private long usedBytes;
+    private long fileCount;
+    private Long quotaBytes;
+    private Long remainingBytes;
+}
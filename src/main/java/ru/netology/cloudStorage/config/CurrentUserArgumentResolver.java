@@ -0,0 +1,46 @@
+package ru.netology.cloudStorage.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import ru.netology.cloudStorage.entity.User;
+
+/**
+ * Подставляет в параметр обработчика типа User пользователя, которого TokenAuthenticationFilter
+ * получил при проверке токена, без повторного запроса в БД.
+ */
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    static final String USER_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".user";
+
+    static void bind(HttpServletRequest request, User user) {
+        request.setAttribute(USER_ATTRIBUTE, user);
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == User.class;
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object user = webRequest.getAttribute(USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (user instanceof User) {
+            return user;
+        }
+        // Аутентификация, установленная не фильтром (например, в тестах)
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User principal) {
+            return principal;
+        }
+        throw new AuthenticationCredentialsNotFoundException("No authenticated user for request");
+    }
+}
@@ -26,6 +26,15 @@ public class HibernateConfig {
             hibernateProperties.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
             hibernateProperties.put("hibernate.jdbc.lob.non_contextual_creation", "true");
 
+            // JDBC-пакеты: изменения сущностей одной таблицы уходят одним executeBatch,
+            // сортировка собирает операции в пакеты по сущности
+            hibernateProperties.put(AvailableSettings.STATEMENT_BATCH_SIZE, "50");
+            hibernateProperties.put(AvailableSettings.ORDER_UPDATES, "true");
+            hibernateProperties.put(AvailableSettings.ORDER_INSERTS, "true");
+            // id из последовательностей блоками по allocationSize: вставка не ждёт id от БД
+            // и попадает в JDBC-пакет, чего IDENTITY не позволяет
+            hibernateProperties.put(AvailableSettings.PREFERRED_POOLED_OPTIMIZER, "pooled");
+
             // Диалект
             hibernateProperties.put(AvailableSettings.DIALECT, "org.hibernate.dialect.PostgreSQLDialect");
         };
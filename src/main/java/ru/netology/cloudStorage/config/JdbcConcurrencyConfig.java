@@ -0,0 +1,39 @@
+package ru.netology.cloudStorage.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+@Slf4j
+public class JdbcConcurrencyConfig {
+
+    /**
+     * Оборачивает DataSource ограничителем, чтобы десятки тысяч виртуальных потоков
+     * не стояли в очереди внутри пула Hikari до его таймаута.
+     * Настройки читаются через Binder: BeanPostProcessor создаётся раньше StorageProperties.
+     */
+    @Bean
+    public static BeanPostProcessor jdbcConcurrencyLimiter(Environment environment) {
+        StorageProperties.ConcurrencyConfig config = Binder.get(environment)
+                .bind("cloud.storage.concurrency", StorageProperties.ConcurrencyConfig.class)
+                .orElseGet(StorageProperties.ConcurrencyConfig::new);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ConcurrencyLimitingDataSource)) {
+                    log.info("Limiting concurrent JDBC use of '{}' to {} connections", beanName, config.getJdbcPermits());
+                    return new ConcurrencyLimitingDataSource(dataSource,
+                            config.getJdbcPermits(), config.getJdbcAcquireTimeoutMs());
+                }
+                return bean;
+            }
+        };
+    }
+}
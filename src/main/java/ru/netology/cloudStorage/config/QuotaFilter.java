@@ -0,0 +1,83 @@
+package ru.netology.cloudStorage.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.netology.cloudStorage.DTO.ErrorResponse;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.QuotaService;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Отказ в загрузке по Content-Length до чтения тела: 413 уходит клиенту вместо 100 Continue,
+ * и сервер не принимает байты, которые всё равно пришлось бы выбросить.
+ * Точная проверка остаётся за сервисом — этот фильтр отсекает только заведомо большие запросы.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QuotaFilter extends OncePerRequestFilter {
+
+    /**
+     * Запас на заголовки частей multipart: Content-Length больше размера самого файла.
+     */
+    static final long MULTIPART_OVERHEAD = 16 * 1024;
+
+    private static final Set<String> UPLOAD_PATHS = Set.of("/file", "/file/stream");
+
+    private final QuotaService quotaService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !quotaService.isEnabled()
+                || !"POST".equals(request.getMethod())
+                || request.getContentLengthLong() <= 0
+                || !UPLOAD_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        if (request.getAttribute(CurrentUserArgumentResolver.USER_ATTRIBUTE) instanceof User user) {
+            long declared = request.getContentLengthLong();
+            String contentType = request.getContentType();
+            if (contentType != null && contentType.startsWith(MediaType.MULTIPART_FORM_DATA_VALUE)) {
+                declared -= MULTIPART_OVERHEAD;
+            }
+            long remaining = quotaService.remaining(user);
+            if (declared > remaining) {
+                log.warn("Upload of {} bytes rejected before reading the body: {} bytes left for user {}",
+                        request.getContentLengthLong(), remaining, user.getLogin());
+                reject(response, remaining);
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, long remaining) throws IOException {
+        response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+        // Непрочитанное тело делает соединение непригодным для следующего запроса
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(new ErrorResponse(
+                "Storage quota exceeded: " + remaining + " bytes available",
+                HttpStatus.PAYLOAD_TOO_LARGE.value())));
+    }
+}
@@ -0,0 +1,54 @@
+package ru.netology.cloudStorage.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.netology.cloudStorage.DTO.ErrorResponse;
+import ru.netology.cloudStorage.service.StorageMetrics;
+import ru.netology.cloudStorage.service.TransferThrottle;
+
+import java.io.IOException;
+
+/**
+ * Ограничение частоты запросов: запрос сверх лимита ждёт своей очереди,
+ * и только если ждать пришлось бы слишком долго, получает 429.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final TransferThrottle transferThrottle;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !transferThrottle.limitsRequests();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+
+        Object user = request.getAttribute(StorageMetrics.USER_ATTRIBUTE);
+        if (!transferThrottle.admitRequest(user != null ? user.toString() : null)) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            response.getWriter().write(objectMapper.writeValueAsString(
+                    new ErrorResponse("Too many requests", HttpStatus.TOO_MANY_REQUESTS.value())));
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
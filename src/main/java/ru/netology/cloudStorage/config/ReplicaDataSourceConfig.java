@@ -0,0 +1,65 @@
+package ru.netology.cloudStorage.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.netology.cloudStorage.service.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Основная БД и реплики чтения за одним DataSource. Пулы создаются внутри маршрутизатора,
+ * а не отдельными бинами: ограничитель JDBC оборачивает каждый DataSource-бин,
+ * и соединение иначе занимало бы по разрешению на каждом уровне.
+ */
+@Configuration
+@ConditionalOnProperty(name = "cloud.storage.replica.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties dataSourceProperties, Environment environment,
+                                       StorageProperties storageProperties, ReadYourWrites readYourWrites,
+                                       MeterRegistry meterRegistry) {
+        StorageProperties.ReplicaConfig config = storageProperties.getReplica();
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        primary.setMetricRegistry(meterRegistry);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < config.getUrls().size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setJdbcUrl(config.getUrls().get(i));
+            replica.setUsername(config.getUsername() != null
+                    ? config.getUsername() : dataSourceProperties.determineUsername());
+            replica.setPassword(config.getPassword() != null
+                    ? config.getPassword() : dataSourceProperties.determinePassword());
+            replica.setDataSourceProperties(primary.getDataSourceProperties());
+            replica.setMaximumPoolSize(config.getMaximumPoolSize());
+            replica.setReadOnly(true);
+            replica.setPoolName("replica-" + i);
+            replica.setMetricRegistry(meterRegistry);
+            replicas.add(replica);
+        }
+
+        log.info("Read-only transactions are routed to {} read replicas", replicas.size());
+        return new ReplicaRouter(primary, replicas, readYourWrites, storageProperties, meterRegistry);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return replicaRouter.dataSource();
+    }
+}
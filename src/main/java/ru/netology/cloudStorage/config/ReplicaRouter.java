@@ -0,0 +1,179 @@
+package ru.netology.cloudStorage.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import ru.netology.cloudStorage.service.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Маршрутизация чтений по репликам. Соединение транзакции readOnly берётся у следующей
+ * по кругу исправной реплики; если пользователь недавно писал, все реплики недоступны
+ * или реплика не выдала соединение — у основной БД. Исправность проверяется по расписанию:
+ * SELECT с отставанием воспроизведения журнала, больше max-lag-ms — реплика выключается
+ * до следующей проверки. Выбор пишется в storage.replica.reads с тегом route.
+ */
+@Slf4j
+public class ReplicaRouter implements AutoCloseable {
+
+    static final String REPLICA = "replica";
+    static final String RECENT_WRITE = "recent_write";
+    static final String FALLBACK = "fallback";
+
+    /**
+     * Отставание в мс; 0 — реплика воспроизвела всё полученное или это не реплика.
+     */
+    static final String LAG_QUERY = """
+            SELECT CASE
+                WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0)
+            END""";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReadYourWrites readYourWrites;
+    private final StorageProperties.ReplicaConfig config;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter toReplica;
+    private final Counter recentWrite;
+    private final Counter fallback;
+
+    public ReplicaRouter(DataSource primary, List<DataSource> replicas, ReadYourWrites readYourWrites,
+                         StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica("replica-" + i, replicas.get(i)));
+        }
+        this.readYourWrites = readYourWrites;
+        this.config = storageProperties.getReplica();
+        this.toReplica = reads(meterRegistry, REPLICA);
+        this.recentWrite = reads(meterRegistry, RECENT_WRITE);
+        this.fallback = reads(meterRegistry, FALLBACK);
+        Gauge.builder("storage.replica.healthy", this, ReplicaRouter::healthyCount)
+                .description("Read replicas currently receiving reads")
+                .register(meterRegistry);
+    }
+
+    /**
+     * DataSource для приложения: соединение открывается лениво, и транзакция readOnly
+     * к этому моменту уже пометила его — такое соединение берётся у маршрутизатора.
+     */
+    public DataSource dataSource() {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(primary);
+        proxy.setReadOnlyDataSource(new ReadDataSource());
+        return proxy;
+    }
+
+    Connection readConnection() throws SQLException {
+        if (readYourWrites.isRecent()) {
+            recentWrite.increment();
+            return primary.getConnection();
+        }
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                toReplica.increment();
+                return connection;
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Read replica {} is unavailable, reads go elsewhere: {}", replica.name, e.getMessage());
+            }
+        }
+        fallback.increment();
+        return primary.getConnection();
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.storage.replica.health-check-interval-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy = probe(replica);
+            if (healthy != replica.healthy) {
+                log.info("Read replica {} is now {}", replica.name, healthy ? "healthy" : "unhealthy");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    int healthyCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    private boolean probe(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(config.getHealthCheckTimeoutSeconds());
+            try (ResultSet result = statement.executeQuery(LAG_QUERY)) {
+                long lagMs = result.next() ? result.getLong(1) : 0;
+                if (config.getMaxLagMs() > 0 && lagMs > config.getMaxLagMs()) {
+                    log.debug("Read replica {} lags {} ms behind the primary", replica.name, lagMs);
+                    return false;
+                }
+                return true;
+            }
+        } catch (SQLException e) {
+            log.debug("Health check of read replica {} failed: {}", replica.name, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static Counter reads(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("storage.replica.reads")
+                .description("Read-only transactions by the database they were routed to")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    private class ReadDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return readConnection();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.netology.cloudStorage.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -23,12 +24,21 @@ import java.util.List;
 public class SecurityConfig {
 
     private final TokenAuthenticationFilter tokenAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final QuotaFilter quotaFilter;
     private final AuthEntryPoint authEntryPoint;
+    private final int managementPort;
 
     public SecurityConfig(TokenAuthenticationFilter tokenAuthenticationFilter,
-                          AuthEntryPoint authEntryPoint) {
+                          RateLimitFilter rateLimitFilter,
+                          QuotaFilter quotaFilter,
+                          AuthEntryPoint authEntryPoint,
+                          @Value("${management.server.port:-1}") int managementPort) {
         this.tokenAuthenticationFilter = tokenAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
+        this.quotaFilter = quotaFilter;
         this.authEntryPoint = authEntryPoint;
+        this.managementPort = managementPort;
     }
 
     @Bean
@@ -45,11 +55,17 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/login").permitAll()
                         .requestMatchers("/actuator/health").permitAll()
+                        // Сборщик метрик ходит на порт управления без токена, он не публикуется наружу;
+                        // на основном порту метрики доступны только с токеном
+                        .requestMatchers(request -> managementPort > 0 && request.getLocalPort() == managementPort)
+                        .permitAll()
                         .anyRequest().authenticated()
                 )
                 .logout(AbstractHttpConfigurer::disable)
                 .addFilterBefore(tokenAuthenticationFilter,
-                        org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter.class);
+                        org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, TokenAuthenticationFilter.class)
+                .addFilterAfter(quotaFilter, RateLimitFilter.class);
 
         return http.build();
     }
@@ -59,8 +75,10 @@ public class SecurityConfig {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOrigins(List.of("http://localhost:8081"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
-        configuration.setAllowedHeaders(Arrays.asList("auth-token", "Content-Type", "Authorization", "Accept"));
-        configuration.setExposedHeaders(List.of("auth-token"));
+        configuration.setAllowedHeaders(Arrays.asList("auth-token", "Content-Type", "Authorization", "Accept",
+                "Range", "If-Range", "If-None-Match", "If-Modified-Since"));
+        configuration.setExposedHeaders(List.of("auth-token", "Accept-Ranges", "Content-Range", "ETag",
+                "Last-Modified", "Content-Disposition", "X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -3,6 +3,10 @@ package ru.netology.cloudStorage.config;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 @ConfigurationProperties(prefix = "cloud.storage")
@@ -11,11 +15,243 @@ public class StorageProperties {
 
     private String path;
     private TokenConfig token = new TokenConfig();
+    private UploadConfig upload = new UploadConfig();
+    private DownloadConfig download = new DownloadConfig();
+    private DedupConfig dedup = new DedupConfig();
+    private ConcurrencyConfig concurrency = new ConcurrencyConfig();
+    private MetricsConfig metrics = new MetricsConfig();
+    private CompressionConfig compression = new CompressionConfig();
+    private LayoutConfig layout = new LayoutConfig();
+    private TieringConfig tiering = new TieringConfig();
+    private FileCacheConfig fileCache = new FileCacheConfig();
+    private ListCacheConfig listCache = new ListCacheConfig();
+    private BatchConfig batch = new BatchConfig();
+    private ArchiveConfig archive = new ArchiveConfig();
+    private ProcessingConfig processing = new ProcessingConfig();
+    private QuotaConfig quota = new QuotaConfig();
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+    private ReplicaConfig replica = new ReplicaConfig();
 
     @Data
     public static class TokenConfig {
         private int validityHours = 24;
         private int maxTokensPerUser = 5;
         private String secretKey;
+        /**
+         * Прежние ключи: подписанные ими токены ещё принимаются, новые подписываются secretKey.
+         */
+        private List<String> previousSecretKeys = new ArrayList<>();
+        private boolean stateless = false;
+        private CacheConfig cache = new CacheConfig();
+        private ReaperConfig reaper = new ReaperConfig();
+        private RevocationConfig revocation = new RevocationConfig();
+    }
+
+    @Data
+    public static class RevocationConfig {
+        private int expectedEntries = 100_000;
+        private double falsePositiveRate = 0.01;
+        private long refreshIntervalMs = 30_000;
+    }
+
+    @Data
+    public static class ReaperConfig {
+        private boolean enabled = true;
+        private long intervalMs = 3_600_000;
+        private long initialDelayMs = 60_000;
+        private int chunkSize = 1000;
+        private long chunkPauseMs = 10;
+    }
+
+    @Data
+    public static class CacheConfig {
+        private boolean enabled = true;
+        private long maxSize = 10_000;
+        private long ttlSeconds = 300;
+    }
+
+    @Data
+    public static class FileCacheConfig {
+        private boolean enabled = true;
+        private long maxWeightBytes = 32L * 1024 * 1024;
+        private long ttlSeconds = 600;
+    }
+
+    @Data
+    public static class ListCacheConfig {
+        private boolean enabled = true;
+        private long maxWeightBytes = 16L * 1024 * 1024;
+        private long ttlSeconds = 300;
+    }
+
+    @Data
+    public static class UploadConfig {
+        private int bufferSize = 64 * 1024;
+        private int bufferPoolSize = 64;
+        private SessionConfig session = new SessionConfig();
+    }
+
+    @Data
+    public static class SessionConfig {
+        private int chunkSize = 8 * 1024 * 1024;
+        private int maxChunkSize = 64 * 1024 * 1024;
+        private int ttlHours = 24;
+        private long gcIntervalMs = 900_000;
+    }
+
+    @Data
+    public static class DownloadConfig {
+        private long sendfileThreshold = 48 * 1024;
+        private int maxRanges = 16;
+    }
+
+    @Data
+    public static class DedupConfig {
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class ConcurrencyConfig {
+        private int diskPermits = 32;
+        private long diskAcquireTimeoutMs = 30_000;
+        private int jdbcPermits = 10;
+        private long jdbcAcquireTimeoutMs = 30_000;
+        private long pinningThresholdMs = 20;
+    }
+
+    @Data
+    public static class CompressionConfig {
+        private boolean enabled = false;
+        private ContentCodec codec = ContentCodec.GZIP;
+        private int level = 6;
+        private int minSize = 1024;
+        private List<String> extensions = new ArrayList<>(List.of(
+                "txt", "log", "csv", "tsv", "json", "xml", "html", "htm", "md", "yaml", "yml",
+                "sql", "js", "css", "svg"));
+    }
+
+    @Data
+    public static class LayoutConfig {
+        private int fanOutLevels = 2;
+        private int charsPerLevel = 2;
+        private boolean migrateOnStartup = false;
+        private int migrationBatchSize = 500;
+        private int migrationParallelism = 8;
+    }
+
+    @Data
+    public static class TieringConfig {
+        private boolean enabled = false;
+        private String fastPath = "./uploads-fast";
+        private long fastMaxBytes = 10L * 1024 * 1024 * 1024;
+        private long promoteAccessCount = 10;
+        private int demoteAfterHours = 72;
+        private long moveIntervalMs = 600_000;
+        private long accessFlushIntervalMs = 10_000;
+        private int batchSize = 100;
+        private long maxBytesPerSecond = 50L * 1024 * 1024;
+    }
+
+    @Data
+    public static class BatchConfig {
+        private int maxItems = 1000;
+        private int unlinkParallelism = 16;
+    }
+
+    @Data
+    public static class ArchiveConfig {
+        private int maxFiles = 1000;
+        private int level = 6;
+        /**
+         * Следующий файл архива читается заранее целиком, если он не больше этого размера
+         * или пишется без сжатия (для STORED заранее нужна CRC-32).
+         */
+        private long prefetchMaxBytes = 64L * 1024 * 1024;
+        private List<String> storedExtensions = new ArrayList<>(List.of(
+                "zip", "gz", "tgz", "bz2", "xz", "zst", "7z", "rar", "jar", "apk",
+                "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+                "mp3", "aac", "m4a", "ogg", "opus", "flac",
+                "mp4", "m4v", "mov", "mkv", "webm", "avi",
+                "pdf", "docx", "xlsx", "pptx", "odt", "ods", "epub"));
+    }
+
+    @Data
+    public static class ProcessingConfig {
+        private boolean enabled = true;
+        private int workers = 2;
+        private int queueCapacity = 1000;
+        /**
+         * Сколько загрузка ждёт места в очереди, прежде чем файл будет отложен до досмотра.
+         */
+        private long enqueueTimeoutMs = 50;
+        private long sweepIntervalMs = 300_000;
+        private int sweepBatchSize = 200;
+        private String previewPath = "./uploads-previews";
+        private List<Integer> thumbnailSizes = new ArrayList<>(List.of(64, 256, 1024));
+        private long maxImageBytes = 50L * 1024 * 1024;
+        private long maxImagePixels = 50_000_000;
+    }
+
+    @Data
+    public static class QuotaConfig {
+        private boolean enabled = false;
+        /**
+         * Квота пользователя без персонального значения в user_usage.quota_bytes.
+         */
+        private long defaultBytes = 10L * 1024 * 1024 * 1024;
+        private long reconcileInitialDelayMs = 120_000;
+        private long reconcileIntervalMs = 3_600_000;
+        private int reconcileChunkSize = 500;
+    }
+
+    @Data
+    public static class RateLimitConfig {
+        private boolean enabled = false;
+        /**
+         * Лимиты на пользователя и на весь сервис; 0 — без ограничения.
+         */
+        private long userBytesPerSecond = 0;
+        private long globalBytesPerSecond = 0;
+        private long userRequestsPerSecond = 0;
+        private long globalRequestsPerSecond = 0;
+        /**
+         * Сколько миллисекунд лимита можно израсходовать сразу после простоя.
+         */
+        private long burstMs = 1000;
+        /**
+         * Запрос, которому пришлось бы ждать дольше, получает 429.
+         */
+        private long maxRequestWaitMs = 2000;
+        private long idleEvictIntervalMs = 60_000;
+    }
+
+    @Data
+    public static class ReplicaConfig {
+        private boolean enabled = false;
+        private List<String> urls = new ArrayList<>();
+        /**
+         * Учётные данные реплик; по умолчанию — как у основной БД.
+         */
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        private long healthCheckIntervalMs = 5000;
+        private int healthCheckTimeoutSeconds = 2;
+        /**
+         * Реплика, отстающая сильнее, не получает чтений до следующей проверки; 0 — не проверять.
+         */
+        private long maxLagMs = 10_000;
+        /**
+         * Сколько после записи чтения пользователя идут в основную БД.
+         */
+        private long readYourWritesMs = 5000;
+    }
+
+    @Data
+    public static class MetricsConfig {
+        /**
+         * Логин в теге user: отдельная серия на пользователя, поэтому по умолчанию выключен.
+         */
+        private boolean userTag = false;
     }
 }
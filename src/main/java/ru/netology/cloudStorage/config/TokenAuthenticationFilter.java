@@ -9,9 +9,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.StorageMetrics;
 import ru.netology.cloudStorage.service.TokenService;
 
 import java.io.IOException;
@@ -30,41 +31,28 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
 
         String requestURI = request.getRequestURI();
-        String method = request.getMethod();
 
-        log.debug("Processing {} {}", method, requestURI);
-
-        if (isPublicEndpoint(requestURI, method)) {
+        if (isPublicEndpoint(requestURI, request.getMethod())) {
             filterChain.doFilter(request, response);
             return;
         }
 
         String token = request.getHeader("auth-token");
 
-        if (token != null && !token.trim().isEmpty()) {
-            token = token.trim();
-
-            if (token.startsWith("Bearer ")) {
-                token = token.substring(7).trim();
-            }
-
-            log.debug("Validating token: {}", token);
-
+        if (token != null && !token.isBlank()) {
             try {
-                Optional<UserDetails> userDetailsOpt = tokenService.validateToken(token);
+                Optional<UserDetails> userDetailsOpt = tokenService.validateToken(token.trim());
 
                 if (userDetailsOpt.isPresent()) {
                     UserDetails userDetails = userDetailsOpt.get();
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(
-                                    userDetails,
-                                    null,
-                                    userDetails.getAuthorities()
-                            );
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-
-                    log.info("User authenticated: {}", userDetails.getUsername());
+                    // Детали запроса (адрес, сессия) нигде не читаются, поэтому не собираются
+                    SecurityContextHolder.getContext().setAuthentication(
+                            UsernamePasswordAuthenticationToken.authenticated(
+                                    userDetails, null, userDetails.getAuthorities()));
+                    if (userDetails instanceof User user) {
+                        CurrentUserArgumentResolver.bind(request, user);
+                    }
+                    request.setAttribute(StorageMetrics.USER_ATTRIBUTE, userDetails.getUsername());
                 } else {
                     log.warn("Token validation failed for request: {}", requestURI);
                 }
@@ -72,8 +60,6 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
                 log.error("Token validation error for request {}: {}",
                         requestURI, e.getMessage(), e);
             }
-        } else {
-            log.debug("No auth-token header for request: {}", requestURI);
         }
 
         filterChain.doFilter(request, response);
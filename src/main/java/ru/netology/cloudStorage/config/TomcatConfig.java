@@ -0,0 +1,18 @@
+package ru.netology.cloudStorage.config;
+
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class TomcatConfig implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    /**
+     * 100 Continue отправляется при первом чтении тела, а не сразу после заголовков:
+     * запрос, отклонённый фильтрами (авторизация, квота), не заставляет клиента передавать тело.
+     */
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(connector -> connector.setProperty("continueResponseTiming", "onRead"));
+    }
+}
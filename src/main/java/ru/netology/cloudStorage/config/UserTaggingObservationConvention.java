@@ -0,0 +1,32 @@
+package ru.netology.cloudStorage.config;
+
+import io.micrometer.common.KeyValue;
+import io.micrometer.common.KeyValues;
+import org.springframework.http.server.observation.DefaultServerRequestObservationConvention;
+import org.springframework.http.server.observation.ServerRequestObservationContext;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.service.StorageMetrics;
+
+/**
+ * Добавляет к http.server.requests тег user из атрибута, выставленного фильтром аутентификации.
+ * Контекст безопасности к моменту остановки наблюдения уже очищен, поэтому берётся атрибут запроса.
+ */
+@Component
+public class UserTaggingObservationConvention extends DefaultServerRequestObservationConvention {
+
+    private final StorageMetrics storageMetrics;
+
+    public UserTaggingObservationConvention(StorageMetrics storageMetrics) {
+        this.storageMetrics = storageMetrics;
+    }
+
+    @Override
+    public KeyValues getLowCardinalityKeyValues(ServerRequestObservationContext context) {
+        KeyValues keyValues = super.getLowCardinalityKeyValues(context);
+        if (!storageMetrics.isUserTagEnabled()) {
+            return keyValues;
+        }
+        Object user = context.getCarrier().getAttribute(StorageMetrics.USER_ATTRIBUTE);
+        return keyValues.and(KeyValue.of("user", user != null ? user.toString() : "anonymous"));
+    }
+}
@@ -0,0 +1,58 @@
+package ru.netology.cloudStorage.config;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Логирует закрепление виртуальных потоков за несущими (synchronized, native-вызовы)
+ * по событию JFR jdk.VirtualThreadPinned, со стеком места закрепления.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualThreadPinningMonitor {
+
+    private static final int MAX_FRAMES = 12;
+
+    private final StorageProperties storageProperties;
+    private RecordingStream recordingStream;
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        Duration threshold = Duration.ofMillis(storageProperties.getConcurrency().getPinningThresholdMs());
+        recordingStream = new RecordingStream();
+        recordingStream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent("jdk.VirtualThreadPinned", this::report);
+        recordingStream.startAsync();
+        log.info("Virtual thread pinning monitor started, threshold {} ms", threshold.toMillis());
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    private void report(RecordedEvent event) {
+        String stack = event.getStackTrace() == null ? "<no stack>" : event.getStackTrace().getFrames().stream()
+                .limit(MAX_FRAMES)
+                .map(VirtualThreadPinningMonitor::frame)
+                .collect(Collectors.joining("\n\tat ", "\n\tat ", ""));
+        log.warn("Virtual thread pinned for {} ms{}", event.getDuration().toMillis(), stack);
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                + ":" + frame.getLineNumber();
+    }
+}
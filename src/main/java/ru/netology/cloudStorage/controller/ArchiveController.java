@@ -0,0 +1,88 @@
+package ru.netology.cloudStorage.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import ru.netology.cloudStorage.DTO.ArchiveRequest;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.ArchiveService;
+import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.service.TransferThrottle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Скачивание нескольких файлов одним ZIP-архивом, который собирается на лету.
+ */
+@RestController
+@RequestMapping("/file/archive")
+@RequiredArgsConstructor
+@Slf4j
+public class ArchiveController {
+
+    private static final String DEFAULT_NAME = "files.zip";
+
+    private final FileStorageService fileStorageService;
+    private final ArchiveService archiveService;
+    private final TransferThrottle transferThrottle;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void downloadArchive(
+            @RequestHeader("auth-token") String token,
+            @Valid @RequestBody ArchiveRequest request,
+            User user,
+            HttpServletResponse response) throws IOException {
+
+        log.info("Archive request for {} files", request.getFilenames().size());
+
+        if (request.getFilenames().size() > archiveService.getMaxFiles()) {
+            log.error("Archive request has too many files: {} (max {})",
+                    request.getFilenames().size(), archiveService.getMaxFiles());
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+
+        List<File> files;
+        try {
+            files = fileStorageService.getFiles(request.getFilenames(), user);
+        } catch (RuntimeException e) {
+            log.error("Archive request failed: {}", e.getMessage());
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        String name = request.getName() != null && !request.getName().isBlank() ? request.getName() : DEFAULT_NAME;
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name, StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        try {
+            long bytes = archiveService.write(files,
+                    transferThrottle.throttle(response.getOutputStream(), user.getLogin()), user.getLogin());
+            log.info("Archive downloaded successfully: {} files, {} bytes by user: {}",
+                    files.size(), bytes, user.getLogin());
+        } catch (IOException | RuntimeException e) {
+            log.error("Archive download failed for user {}: {}", user.getLogin(), e.getMessage());
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                return;
+            }
+            // Ответ уже частично отправлен: исключение заставит контейнер оборвать соединение,
+            // а не завершить тело, так что клиент не примет обрезанный архив за целый
+            throw e;
+        }
+    }
+}
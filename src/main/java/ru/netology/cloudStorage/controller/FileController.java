@@ -1,25 +1,35 @@
 package ru.netology.cloudStorage.controller;
 
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import ru.netology.cloudStorage.DTO.BatchRequest;
+import ru.netology.cloudStorage.DTO.BatchResponse;
 import ru.netology.cloudStorage.DTO.RenameRequest;
+import ru.netology.cloudStorage.DTO.UploadStatsResponse;
+import ru.netology.cloudStorage.entity.File;
 import ru.netology.cloudStorage.entity.User;
-import ru.netology.cloudStorage.repository.UserRepository;
+import ru.netology.cloudStorage.exception.QuotaExceededException;
+import ru.netology.cloudStorage.service.BufferPool;
+import ru.netology.cloudStorage.service.FileBatchService;
+import ru.netology.cloudStorage.service.FileDownloadService;
 import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.util.MultipartStreamReader;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 @RestController
@@ -29,34 +39,36 @@ import java.nio.file.Path;
 public class FileController {
 
     private final FileStorageService fileStorageService;
-    private final UserRepository userRepository;
+    private final FileBatchService fileBatchService;
+    private final FileDownloadService fileDownloadService;
+    private final BufferPool bufferPool;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Void> uploadFile(
             @RequestHeader("auth-token") String token,
             @RequestParam("filename") String filename,
             @RequestParam("file") MultipartFile file,
-            @AuthenticationPrincipal Object principal) {
+            User user) {
 
         log.info("Upload request for file: {}", filename);
 
         try {
-            User user = extractUserFromPrincipal(principal);
-            if (user == null) {
-                log.error("Cannot extract user from principal");
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
-
             log.info("Uploading file: {} by user: {} (size: {} bytes)",
                     filename, user.getLogin(), file.getSize());
 
+            long started = System.nanoTime();
             fileStorageService.store(file, filename, user);
-            log.info("File uploaded successfully: {}", filename);
+            UploadStatsResponse stats = UploadStatsResponse.of(filename, file.getSize(), System.nanoTime() - started);
+            log.info("File uploaded successfully: {} ({} bytes in {} ms, {} B/s)",
+                    filename, stats.getBytes(), stats.getMillis(), stats.getBytesPerSecond());
             return ResponseEntity.ok().build();
 
         } catch (IllegalArgumentException e) {
             log.error("Invalid request parameters for {}: {}", filename, e.getMessage());
             return ResponseEntity.badRequest().build();
+        } catch (QuotaExceededException e) {
+            log.warn("File upload rejected for {}: {}", filename, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
         } catch (RuntimeException e) {
             log.error("File upload failed for {}: {}", filename, e.getMessage());
             return ResponseEntity.badRequest().build();
@@ -66,47 +78,165 @@ public class FileController {
         }
     }
 
-    @GetMapping
-    public ResponseEntity<Resource> downloadFile(
+    /**
+     * Потоковая загрузка: тело запроса (multipart/form-data или сырые байты) разбирается
+     * по мере чтения из сокета и пишется сразу в файл хранилища, минуя временный файл контейнера.
+     */
+    @PostMapping(value = "/stream",
+            consumes = {MediaType.MULTIPART_FORM_DATA_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<UploadStatsResponse> uploadFileStream(
             @RequestHeader("auth-token") String token,
-            @RequestParam("filename") String filename,
-            @AuthenticationPrincipal Object principal) {
+            HttpServletRequest request,
+            User user) {
 
-        log.info("Download request for file: {}", filename);
+        // getParameter() у multipart-запроса заставил бы контейнер разобрать всё тело,
+        // поэтому имя файла берём из query string напрямую
+        String filename = queryParam(request, "filename");
+        log.info("Streaming upload request for file: {} (content length: {})",
+                filename, request.getContentLengthLong());
 
+        ByteBuffer buffer = null;
         try {
-            User user = extractUserFromPrincipal(principal);
-            if (user == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            long started = System.nanoTime();
+            long bytes;
+            MediaType contentType = MediaType.parseMediaType(request.getContentType());
+
+            if (MediaType.MULTIPART_FORM_DATA.includes(contentType)) {
+                String boundary = contentType.getParameter("boundary");
+                if (boundary == null || boundary.isBlank()) {
+                    return ResponseEntity.badRequest().build();
+                }
+                buffer = bufferPool.acquire();
+                MultipartStreamReader reader = new MultipartStreamReader(
+                        request.getInputStream(), unquote(boundary), buffer.array());
+                MultipartStreamReader.Part part = reader.findPart("file");
+                if (part == null) {
+                    log.error("Multipart body has no file part for {}", filename);
+                    return ResponseEntity.badRequest().build();
+                }
+                if (filename == null) {
+                    filename = part.getFilename();
+                }
+                bytes = fileStorageService.storeStream(part.getBody(), filename, user);
+            } else {
+                try (InputStream in = request.getInputStream()) {
+                    bytes = fileStorageService.storeStream(in, filename, user);
+                }
             }
 
-            Path filePath = fileStorageService.load(filename, user);
-            Resource resource = new UrlResource(filePath.toUri());
+            UploadStatsResponse stats = UploadStatsResponse.of(filename, bytes, System.nanoTime() - started);
+            log.info("File streamed successfully: {} ({} bytes in {} ms, {} B/s)",
+                    filename, stats.getBytes(), stats.getMillis(), stats.getBytesPerSecond());
+            return ResponseEntity.ok(stats);
 
-            if (!resource.exists() || !resource.isReadable()) {
-                log.error("File not found or not readable: {}", filename);
+        } catch (QuotaExceededException e) {
+            log.warn("Streaming upload rejected for {}: {}", filename, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (RuntimeException e) {
+            log.error("Streaming upload failed for {}: {}", filename, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("IO error during streaming upload for {}: {}", filename, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Проверка, хранится ли уже среди файлов пользователя содержимое с таким SHA-256:
+     * 200 — да, 404 — нужно загружать.
+     */
+    @GetMapping("/blob")
+    public ResponseEntity<Void> hasBlob(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("hash") String hash,
+            User user) {
+
+        try {
+            return fileStorageService.hasBlob(hash, user)
+                    ? ResponseEntity.ok().build()
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid blob hash {}: {}", hash, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Создание файла из содержимого, уже хранящегося у пользователя, без передачи байт.
+     * 404 означает, что blob-а нет и файл нужно загрузить обычным способом.
+     */
+    @PostMapping("/link")
+    public ResponseEntity<Void> linkFile(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("filename") String filename,
+            @RequestParam("hash") String hash,
+            @RequestParam("size") long size,
+            User user) {
+
+        log.info("Link request for file: {} (hash: {})", filename, hash);
+
+        try {
+            if (!fileStorageService.storeFromBlob(filename, hash, size, user)) {
+                log.info("Blob {} not found, client has to upload {}", hash, filename);
                 return ResponseEntity.notFound().build();
             }
+            log.info("File linked successfully: {} by user: {}", filename, user.getLogin());
+            return ResponseEntity.ok().build();
 
-            String contentType = "application/octet-stream";
-            String headerValue = "attachment; filename=\"" + filename + "\"";
+        } catch (QuotaExceededException e) {
+            log.warn("File link rejected for {}: {}", filename, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (RuntimeException e) {
+            log.error("File link failed for {}: {}", filename, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
 
-            log.info("File downloaded successfully: {} by user: {}", filename, user.getLogin());
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, headerValue)
-                    .contentLength(resource.contentLength())
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .body(resource);
+    /**
+     * Скачивание файла. Поддерживает Range/If-Range (206, multipart/byteranges)
+     * и условные запросы If-None-Match/If-Modified-Since (304).
+     */
+    @GetMapping
+    public void downloadFile(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("filename") String filename,
+            User user,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        log.info("Download request for file: {} (range: {})", filename, request.getHeader(HttpHeaders.RANGE));
+
+        try {
+            File file = fileStorageService.getFile(filename, user);
+            Path filePath = fileStorageService.resolveForRead(file);
+            if (!Files.isReadable(filePath)) {
+                // Файл мог быть перенесён между уровнями хранения после чтения строки
+                file = fileStorageService.refreshFile(filename, user);
+                filePath = fileStorageService.resolvePath(file);
+            }
+
+            if (!Files.isReadable(filePath)) {
+                log.error("File not found or not readable: {}", filename);
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+
+            fileDownloadService.serve(request, response, file, filePath);
+            log.info("File downloaded successfully: {} by user: {} (status: {})",
+                    filename, user.getLogin(), response.getStatus());
 
         } catch (RuntimeException e) {
             log.error("File download failed for {}: {}", filename, e.getMessage());
-            return ResponseEntity.notFound().build();
-        } catch (MalformedURLException e) {
-            log.error("Malformed URL for file {}: {}", filename, e.getMessage());
-            return ResponseEntity.internalServerError().build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+            }
         } catch (IOException e) {
             log.error("IO error during file download for {}: {}", filename, e.getMessage());
-            return ResponseEntity.internalServerError().build();
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
         }
     }
 
@@ -114,16 +244,11 @@ public class FileController {
     public ResponseEntity<Void> deleteFile(
             @RequestHeader("auth-token") String token,
             @RequestParam("filename") String filename,
-            @AuthenticationPrincipal Object principal) {
+            User user) {
 
         log.info("Delete request for file: {}", filename);
 
         try {
-            User user = extractUserFromPrincipal(principal);
-            if (user == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
-
             fileStorageService.delete(filename, user);
             log.info("File deleted successfully: {} by user: {}", filename, user.getLogin());
             return ResponseEntity.ok().build();
@@ -142,16 +267,11 @@ public class FileController {
             @RequestHeader("auth-token") String token,
             @RequestParam("filename") String filename,
             @Valid @RequestBody RenameRequest request,
-            @AuthenticationPrincipal Object principal) {
+            User user) {
 
         log.info("Rename request for file: {} -> {}", filename, request.getName());
 
         try {
-            User user = extractUserFromPrincipal(principal);
-            if (user == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
-
             fileStorageService.rename(filename, request.getName(), user);
             log.info("File renamed successfully: {} -> {} by user: {}",
                     filename, request.getName(), user.getLogin());
@@ -169,46 +289,56 @@ public class FileController {
     }
 
     /**
-     * Безопасное извлечение User entity из Spring Security principal
+     * Пакет удалений и переименований в одной транзакции. Ответ 200 с результатом
+     * по каждому элементу; 400 — если пакет больше cloud.storage.batch.max-items.
      */
-    private User extractUserFromPrincipal(Object principal) {
-        if (principal == null) {
-            log.error("Principal is null");
-            return null;
-        }
-
-        log.debug("Principal type: {}", principal.getClass().getName());
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResponse> batch(
+            @RequestHeader("auth-token") String token,
+            @Valid @RequestBody BatchRequest request,
+            User user) {
 
-        if (principal instanceof User) {
-            User user = (User) principal;
-            log.debug("Principal is User entity: {}", user.getLogin());
-            return user;
-        }
+        log.info("Batch request: {} deletes, {} renames",
+                request.getDelete() != null ? request.getDelete().size() : 0,
+                request.getRename() != null ? request.getRename().size() : 0);
 
-        if (principal instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) principal;
-            String username = userDetails.getUsername();
-            log.debug("Principal is UserDetails with username: {}", username);
+        try {
+            BatchResponse response = BatchResponse.of(fileBatchService.apply(request, user));
+            log.info("Batch completed for user: {} ({} succeeded, {} failed)",
+                    user.getLogin(), response.getSucceeded(), response.getFailed());
+            return ResponseEntity.ok(response);
 
-            return userRepository.findByLogin(username)
-                    .orElseThrow(() -> {
-                        log.error("User not found in DB for username: {}", username);
-                        return new RuntimeException("User not found");
-                    });
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid batch request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (RuntimeException e) {
+            log.error("Batch failed for user {}: {}", user.getLogin(), e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        } catch (IOException e) {
+            log.error("IO error during batch for user {}: {}", user.getLogin(), e.getMessage());
+            return ResponseEntity.internalServerError().build();
         }
+    }
 
-        if (principal instanceof String) {
-            String username = (String) principal;
-            log.debug("Principal is String username: {}", username);
-
-            return userRepository.findByLogin(username)
-                    .orElseThrow(() -> {
-                        log.error("User not found in DB for username: {}", username);
-                        return new RuntimeException("User not found");
-                    });
+    private static String queryParam(HttpServletRequest request, String name) {
+        String query = request.getQueryString();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))) {
+                return eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            }
         }
-
-        log.error("Unknown principal type: {}", principal.getClass().getName());
         return null;
     }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
 }
\ No newline at end of file
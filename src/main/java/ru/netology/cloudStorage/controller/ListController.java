@@ -1,98 +1,87 @@
 package ru.netology.cloudStorage.controller;
 
-import org.springframework.http.HttpStatus;
-import org.springframework.security.core.userdetails.UserDetails;
-import ru.netology.cloudStorage.DTO.FileInfoResponse;
 import ru.netology.cloudStorage.entity.User;
-import ru.netology.cloudStorage.repository.UserRepository;
-import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.service.FileListCache;
+import ru.netology.cloudStorage.util.FileSortKey;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/list")
 @RequiredArgsConstructor
 @Slf4j
 public class ListController {
 
-    private final FileStorageService fileStorageService;
-    private final UserRepository userRepository;
+    private final FileListCache fileListCache;
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     @GetMapping
-    public ResponseEntity<List<FileInfoResponse>> listFiles(
+    public ResponseEntity<byte[]> listFiles(
             @RequestHeader("auth-token") String token,
             @RequestParam(value = "limit", defaultValue = "10") int limit,
-            @AuthenticationPrincipal Object principal) {
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "order", required = false) String order,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            User user) {
 
-        log.info("List files request, limit: {}", limit);
+        log.info("List files request, limit: {}, sort: {} {}, cursor: {}", limit, sort, order, cursor);
 
         try {
-            User user = extractUserFromPrincipal(principal);
-            if (user == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
-            }
-
             if (limit <= 0 || limit > 100) {
                 log.warn("Invalid limit value: {}, using default 10", limit);
                 limit = 10;
             }
 
-            List<FileInfoResponse> files = fileStorageService.listFiles(user, limit);
-            log.info("Returning {} files for user: {}", files.size(), user.getLogin());
-            return ResponseEntity.ok(files);
+            FileListCache.Listing listing = fileListCache.list(user, limit,
+                    FileSortKey.parse(sort), parseOrder(order), cursor, ifNoneMatch);
+            // Клиент перепроверяет список при каждом опросе, но получает тело только после изменений
+            CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+            if (listing.notModified()) {
+                log.debug("File list not modified for user: {}", user.getLogin());
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(listing.etag())
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+            log.info("Returning file list for user: {}", user.getLogin());
+
+            // Тело остаётся массивом для совместимости с фронтендом, курсор следующей страницы — в заголовке
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(listing.etag())
+                    .cacheControl(cacheControl);
+            if (listing.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, listing.nextCursor());
+            }
+            return response.body(listing.body());
 
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid list request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error getting file list: {}", e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    /**
-     * Безопасное извлечение User entity из Spring Security principal
-     */
-    private User extractUserFromPrincipal(Object principal) {
-        if (principal == null) {
-            log.error("Principal is null");
+    private static Boolean parseOrder(String order) {
+        if (order == null || order.isBlank()) {
             return null;
         }
-
-        log.debug("Principal type: {}", principal.getClass().getName());
-
-        if (principal instanceof User) {
-            User user = (User) principal;
-            log.debug("Principal is User entity: {}", user.getLogin());
-            return user;
-        }
-
-        if (principal instanceof UserDetails) {
-            UserDetails userDetails = (UserDetails) principal;
-            String username = userDetails.getUsername();
-            log.debug("Principal is UserDetails with username: {}", username);
-
-            return userRepository.findByLogin(username)
-                    .orElseThrow(() -> {
-                        log.error("User not found in DB for username: {}", username);
-                        return new RuntimeException("User not found");
-                    });
+        if (order.equalsIgnoreCase("desc")) {
+            return true;
         }
-
-        if (principal instanceof String) {
-            String username = (String) principal;
-            log.debug("Principal is String username: {}", username);
-
-            return userRepository.findByLogin(username)
-                    .orElseThrow(() -> {
-                        log.error("User not found in DB for username: {}", username);
-                        return new RuntimeException("User not found");
-                    });
+        if (order.equalsIgnoreCase("asc")) {
+            return false;
         }
-
-        log.error("Unknown principal type: {}", principal.getClass().getName());
-        return null;
+        throw new IllegalArgumentException("Unknown sort order: " + order);
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package ru.netology.cloudStorage.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.FileStorageService;
+import ru.netology.cloudStorage.service.PreviewStore;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Миниатюры изображений, подготовленные фоновой обработкой после загрузки.
+ * 404 — файл не изображение или ещё не обработан.
+ */
+@RestController
+@RequestMapping("/file/preview")
+@RequiredArgsConstructor
+@Slf4j
+public class PreviewController {
+
+    private final FileStorageService fileStorageService;
+    private final PreviewStore previewStore;
+
+    @GetMapping
+    public ResponseEntity<Resource> getPreview(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("filename") String filename,
+            @RequestParam(value = "size", defaultValue = "256") int size,
+            User user) {
+
+        try {
+            File file = fileStorageService.getFile(filename, user);
+            Optional<Path> preview = previewStore.find(file.getId(), size);
+            if (preview.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            // Миниатюра привязана к id файла и не меняется, пока файл существует
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(PreviewStore.CONTENT_TYPE))
+                    .cacheControl(CacheControl.maxAge(1, TimeUnit.DAYS).cachePrivate())
+                    .body(new FileSystemResource(preview.get()));
+
+        } catch (RuntimeException e) {
+            log.error("Preview request failed for {}: {}", filename, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.netology.cloudStorage.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.netology.cloudStorage.DTO.FileInfoResponse;
+import ru.netology.cloudStorage.DTO.FileListPage;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.FileStorageService;
+
+import java.util.List;
+
+/**
+ * Поиск файлов по имени. Ответ в том же формате, что у /list: массив FileInfoResponse,
+ * курсор следующей страницы — в заголовке X-Next-Cursor.
+ */
+@RestController
+@RequestMapping("/search")
+@RequiredArgsConstructor
+@Slf4j
+public class SearchController {
+
+    private final FileStorageService fileStorageService;
+
+    @GetMapping
+    public ResponseEntity<List<FileInfoResponse>> search(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("query") String query,
+            @RequestParam(value = "mode", defaultValue = "contains") String mode,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            User user) {
+
+        log.info("Search request: '{}' ({}, sort: {}), limit: {}, cursor: {}", query, mode, sort, limit, cursor);
+
+        try {
+            if (limit <= 0 || limit > 100) {
+                log.warn("Invalid limit value: {}, using default 10", limit);
+                limit = 10;
+            }
+
+            FileListPage page = fileStorageService.searchFiles(user, query, parseMode(mode), parseSort(sort),
+                    limit, cursor);
+            log.info("Search returned {} files for user: {}", page.getFiles().size(), user.getLogin());
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.getNextCursor() != null) {
+                response.header(ListController.NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return response.body(page.getFiles());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid search request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error searching files: {}", e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * true — поиск по префиксу, false — по подстроке.
+     */
+    private static boolean parseMode(String mode) {
+        if (mode.equalsIgnoreCase("prefix")) {
+            return true;
+        }
+        if (mode.equalsIgnoreCase("contains")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown search mode: " + mode);
+    }
+
+    private static Boolean parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return null;
+        }
+        if (sort.equalsIgnoreCase("relevance")) {
+            return true;
+        }
+        if (sort.equalsIgnoreCase("name")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown search sort: " + sort);
+    }
+}
@@ -0,0 +1,149 @@
+package ru.netology.cloudStorage.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.netology.cloudStorage.DTO.UploadSessionResponse;
+import ru.netology.cloudStorage.entity.UploadSession;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.exception.QuotaExceededException;
+import ru.netology.cloudStorage.service.UploadSessionService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Загрузка по частям: создание сессии, части в любом порядке и параллельно,
+ * статус полученных частей и commit.
+ */
+@RestController
+@RequestMapping("/file/session")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionController {
+
+    private final UploadSessionService uploadSessionService;
+
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createSession(
+            @RequestHeader("auth-token") String token,
+            @RequestParam("filename") String filename,
+            @RequestParam("size") long size,
+            @RequestParam(value = "chunkSize", required = false) Integer chunkSize,
+            User user) {
+
+        log.info("Upload session request for file: {} ({} bytes)", filename, size);
+
+        try {
+            UploadSession session = uploadSessionService.create(filename, size, chunkSize, user);
+            return ResponseEntity.ok(uploadSessionService.toResponse(session));
+
+        } catch (QuotaExceededException e) {
+            log.warn("Upload session rejected for {}: {}", filename, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (RuntimeException e) {
+            log.error("Upload session creation failed for {}: {}", filename, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("IO error creating upload session for {}: {}", filename, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PutMapping(value = "/{sessionId}/chunk/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> uploadChunk(
+            @RequestHeader("auth-token") String token,
+            @PathVariable("sessionId") String sessionId,
+            @PathVariable("index") int index,
+            HttpServletRequest request,
+            User user) {
+
+        try {
+            try (InputStream in = request.getInputStream()) {
+                uploadSessionService.writeChunk(sessionId, index, request.getContentLengthLong(), in, user);
+            }
+            return ResponseEntity.ok().build();
+
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid chunk {} for session {}: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.error("Chunk {} rejected for session {}: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            log.error("Chunk upload failed for session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            log.error("IO error during chunk {} upload for session {}: {}", index, sessionId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getSession(
+            @RequestHeader("auth-token") String token,
+            @PathVariable("sessionId") String sessionId,
+            User user) {
+
+        try {
+            return ResponseEntity.ok(uploadSessionService.status(sessionId, user));
+
+        } catch (RuntimeException e) {
+            log.error("Upload session status failed for {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<Void> commitSession(
+            @RequestHeader("auth-token") String token,
+            @PathVariable("sessionId") String sessionId,
+            User user) {
+
+        log.info("Commit request for upload session: {}", sessionId);
+
+        try {
+            uploadSessionService.commit(sessionId, user);
+            return ResponseEntity.ok().build();
+
+        } catch (IllegalStateException e) {
+            log.error("Upload session {} cannot be committed: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (QuotaExceededException e) {
+            log.warn("Upload session {} rejected: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        } catch (RuntimeException e) {
+            log.error("Upload session commit failed for {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("IO error committing upload session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> abortSession(
+            @RequestHeader("auth-token") String token,
+            @PathVariable("sessionId") String sessionId,
+            User user) {
+
+        try {
+            uploadSessionService.abort(sessionId, user);
+            return ResponseEntity.ok().build();
+
+        } catch (IllegalStateException e) {
+            log.error("Upload session {} is busy: {}", sessionId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RuntimeException e) {
+            log.error("Upload session abort failed for {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            log.error("IO error aborting upload session {}: {}", sessionId, e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
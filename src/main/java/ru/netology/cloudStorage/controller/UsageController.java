@@ -0,0 +1,30 @@
+package ru.netology.cloudStorage.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.netology.cloudStorage.DTO.UsageResponse;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.QuotaService;
+
+/**
+ * Занятое место и квота пользователя, по счётчикам без обхода его файлов.
+ */
+@RestController
+@RequestMapping("/usage")
+@RequiredArgsConstructor
+public class UsageController {
+
+    private final QuotaService quotaService;
+
+    @GetMapping
+    public ResponseEntity<UsageResponse> getUsage(
+            @RequestHeader("auth-token") String token,
+            User user) {
+
+        return ResponseEntity.ok(quotaService.usage(user));
+    }
+}
@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class AuthToken {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auth_tokens_id_seq")
+    @SequenceGenerator(name = "auth_tokens_id_seq", sequenceName = "auth_tokens_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
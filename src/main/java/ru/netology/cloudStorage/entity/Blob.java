@@ -0,0 +1,27 @@
+package ru.netology.cloudStorage.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "blobs")
+@Data
+@NoArgsConstructor
+public class Blob {
+
+    @Id
+    @Column(name = "digest", length = 64)
+    private String digest;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -14,7 +14,8 @@ import java.time.LocalDateTime;
 public class File {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "files_id_seq")
+    @SequenceGenerator(name = "files_id_seq", sequenceName = "files_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false)
@@ -32,6 +33,42 @@ public class File {
     @Column(name = "upload_date")
     private LocalDateTime uploadDate;
 
+    @Column(name = "blob_digest", length = 64)
+    private String blobDigest;
+
+    /**
+     * Кодек, которым сжато содержимое на диске (значение Content-Encoding), null — без сжатия.
+     * size всегда хранит исходный размер, storedSize — размер на диске.
+     */
+    @Column(name = "codec", length = 16)
+    private String codec;
+
+    @Column(name = "stored_size")
+    private Long storedSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tier", length = 16, nullable = false)
+    private StorageTier tier = StorageTier.CAPACITY;
+
+    @Column(name = "access_count", nullable = false)
+    private Long accessCount = 0L;
+
+    @Column(name = "last_access_at")
+    private LocalDateTime lastAccessAt;
+
+    /**
+     * Заполняются фоновой обработкой после загрузки; processedAt == null — ещё не обработан.
+     * checksum — SHA-256 исходного (несжатого) содержимого.
+     */
+    @Column(name = "checksum", length = 64)
+    private String checksum;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
     public File(String filename, Long size, String filePath, User user) {
         this.filename = filename;
         this.size = size;
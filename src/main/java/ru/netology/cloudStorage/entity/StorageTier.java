@@ -0,0 +1,9 @@
+package ru.netology.cloudStorage.entity;
+
+/**
+ * Уровень хранения файла: быстрый диск для часто читаемых файлов и основной объёмный.
+ */
+public enum StorageTier {
+    FAST,
+    CAPACITY
+}
@@ -0,0 +1,47 @@
+package ru.netology.cloudStorage.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "upload_sessions")
+@Data
+@NoArgsConstructor
+public class UploadSession {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "name", nullable = false)
+    private String filename;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @Column(name = "chunk_size", nullable = false)
+    private Integer chunkSize;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public UploadSession(String id, User user, String filename, Long size, Integer chunkSize) {
+        this.id = id;
+        this.user = user;
+        this.filename = filename;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public int getChunkCount() {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+}
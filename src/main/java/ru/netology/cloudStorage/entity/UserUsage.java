@@ -0,0 +1,34 @@
+package ru.netology.cloudStorage.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Занятое пользователем место. Счётчики меняются в транзакциях загрузки и удаления,
+ * поэтому для проверки квоты не нужен SUM по files. quotaBytes == null — квота по умолчанию.
+ */
+@Entity
+@Table(name = "user_usage")
+@Data
+@NoArgsConstructor
+public class UserUsage {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "used_bytes", nullable = false)
+    private Long usedBytes = 0L;
+
+    @Column(name = "file_count", nullable = false)
+    private Long fileCount = 0L;
+
+    @Column(name = "quota_bytes")
+    private Long quotaBytes;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,8 @@
+package ru.netology.cloudStorage.exception;
+
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(String message) {
+        super(message);
+    }
+}
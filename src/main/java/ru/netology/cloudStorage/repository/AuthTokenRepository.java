@@ -1,9 +1,11 @@
 package ru.netology.cloudStorage.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.netology.cloudStorage.entity.AuthToken;
 import ru.netology.cloudStorage.entity.User;
 
@@ -20,14 +22,31 @@ public interface AuthTokenRepository extends JpaRepository<AuthToken, Long> {
 
     int deleteByUser(User user);
 
-    List<AuthToken> findByExpiresAtBefore(LocalDateTime dateTime);
-
     boolean existsByUserAndExpiresAtAfter(User user, LocalDateTime dateTime);
 
-    List<AuthToken> findByUserIdOrderByCreatedAtAsc(Long userId);
-
-    @Query("SELECT at.user.id, COUNT(at) FROM AuthToken at GROUP BY at.user.id HAVING COUNT(at) > 5")
-    List<Object[]> findUsersWithTokenCount();
+    /**
+     * Удаляет не более limit просроченных токенов в собственной транзакции.
+     * Строки, заблокированные другими транзакциями, пропускаются до следующего прохода.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM auth_tokens WHERE id IN (" +
+            "SELECT id FROM auth_tokens WHERE expires_at < :now " +
+            "LIMIT :limit FOR UPDATE SKIP LOCKED)",
+            nativeQuery = true)
+    int deleteExpiredChunk(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Удаляет не более limit самых старых токенов сверх keep у каждого пользователя.
+     * Возвращает значения удалённых токенов, чтобы убрать их из кэша.
+     */
+    @Transactional
+    @Query(value = "DELETE FROM auth_tokens WHERE id IN (" +
+            "SELECT id FROM (SELECT id, ROW_NUMBER() OVER " +
+            "(PARTITION BY user_id ORDER BY created_at DESC, id DESC) AS rn FROM auth_tokens) ranked " +
+            "WHERE rn > :keep LIMIT :limit) RETURNING token",
+            nativeQuery = true)
+    List<String> deleteExcessChunk(@Param("keep") int keep, @Param("limit") int limit);
 
     @Query("SELECT at FROM AuthToken at JOIN FETCH at.user WHERE at.token = :token")
     Optional<AuthToken> findByTokenWithUser(@Param("token") String token);
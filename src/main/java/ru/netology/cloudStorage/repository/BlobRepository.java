@@ -0,0 +1,38 @@
+package ru.netology.cloudStorage.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.netology.cloudStorage.entity.Blob;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    /**
+     * Вставляет blob со счётчиком 1 или увеличивает счётчик существующего.
+     * Строка остаётся заблокированной до конца транзакции.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO blobs (digest, size, ref_count, created_at) " +
+            "VALUES (:digest, :size, 1, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (digest) DO UPDATE SET ref_count = blobs.ref_count + 1",
+            nativeQuery = true)
+    int acquire(@Param("digest") String digest, @Param("size") long size);
+
+    @Query("SELECT b.refCount FROM Blob b WHERE b.digest = :digest")
+    long refCount(@Param("digest") String digest);
+
+    @Modifying
+    @Query("UPDATE Blob b SET b.refCount = b.refCount + 1 WHERE b.digest = :digest AND b.size = :size")
+    int acquireExisting(@Param("digest") String digest, @Param("size") long size);
+
+    @Modifying
+    @Query("UPDATE Blob b SET b.refCount = b.refCount - 1 WHERE b.digest = :digest")
+    int release(@Param("digest") String digest);
+
+    @Modifying
+    @Query("DELETE FROM Blob b WHERE b.digest = :digest AND b.refCount <= 0")
+    int deleteUnreferenced(@Param("digest") String digest);
+}
@@ -1,17 +1,105 @@
 package ru.netology.cloudStorage.repository;
 
 import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.StorageTier;
 import ru.netology.cloudStorage.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface FileRepository extends JpaRepository<File, Long> {
+public interface FileRepository extends JpaRepository<File, Long>, FileRepositoryCustom {
     Optional<File> findByUserAndFilename(User user, String filename);
-    List<File> findAllByUserOrderByUploadDateDesc(User user);
     boolean existsByUserAndFilename(User user, String filename);
     void deleteByUserAndFilename(User user, String filename);
+    List<File> findByUserAndFilenameIn(User user, Collection<String> filenames);
+    boolean existsByUserAndBlobDigest(User user, String blobDigest);
+
+    /**
+     * Удаление и переименование по id, известному из кэша метаданных, без предварительной загрузки строки.
+     * 0 — строки уже нет или у неё другое имя.
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM File f WHERE f.id = :id AND f.user = :user")
+    int deleteOwned(@Param("id") Long id, @Param("user") User user);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.filename = :newName WHERE f.id = :id AND f.user = :user AND f.filename = :oldName")
+    int renameOwned(@Param("id") Long id, @Param("user") User user,
+                    @Param("oldName") String oldName, @Param("newName") String newName);
+
+    /**
+     * Файлы, лежащие прямо в корне хранилища (до раскладки по подкаталогам), по возрастанию id.
+     */
+    @Query("SELECT f FROM File f WHERE f.blobDigest IS NULL AND f.filePath NOT LIKE '%/%' " +
+            "AND f.id > :afterId ORDER BY f.id")
+    List<File> findFlatAfter(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Смена пути, только если он не изменился с момента чтения.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.filePath = :newPath WHERE f.id = :id AND f.filePath = :oldPath")
+    int updateFilePath(@Param("id") Long id, @Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.accessCount = f.accessCount + :count, f.lastAccessAt = :at WHERE f.id = :id")
+    int recordAccess(@Param("id") Long id, @Param("count") long count, @Param("at") LocalDateTime at);
+
+    /**
+     * Снижение счётчиков вдвое после каждого прохода переносчика: горячим остаётся
+     * файл, который читают сейчас, а не читали когда-то.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.accessCount = f.accessCount / 2 WHERE f.accessCount > 0")
+    int decayAccessCounts();
+
+    @Query("SELECT f FROM File f WHERE f.tier = :tier AND f.blobDigest IS NULL " +
+            "AND f.accessCount >= :minCount ORDER BY f.accessCount DESC")
+    List<File> findHot(@Param("tier") StorageTier tier, @Param("minCount") long minCount, Limit limit);
+
+    @Query("SELECT f FROM File f WHERE f.tier = :tier " +
+            "AND (f.lastAccessAt IS NULL OR f.lastAccessAt < :before) ORDER BY f.lastAccessAt")
+    List<File> findCold(@Param("tier") StorageTier tier, @Param("before") LocalDateTime before, Limit limit);
+
+    @Query("SELECT COALESCE(SUM(COALESCE(f.storedSize, f.size)), 0) FROM File f WHERE f.tier = :tier")
+    long sumStoredSize(@Param("tier") StorageTier tier);
+
+    /**
+     * Фиксация переноса между уровнями, только если файл не меняли во время копирования.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.tier = :to, f.filePath = :newPath " +
+            "WHERE f.id = :id AND f.tier = :from AND f.filePath = :oldPath")
+    int moveTier(@Param("id") Long id, @Param("from") StorageTier from, @Param("oldPath") String oldPath,
+                 @Param("to") StorageTier to, @Param("newPath") String newPath);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.checksum = :checksum, f.contentType = :contentType, f.processedAt = :at " +
+            "WHERE f.id = :id")
+    int saveProcessing(@Param("id") Long id, @Param("checksum") String checksum,
+                       @Param("contentType") String contentType, @Param("at") LocalDateTime at);
+
+    /**
+     * Файлы, не прошедшие фоновую обработку: выпавшие из переполненной очереди,
+     * не обработанные до перезапуска или загруженные до появления обработки.
+     */
+    @Query("SELECT f.id FROM File f WHERE f.processedAt IS NULL AND f.uploadDate < :before ORDER BY f.id")
+    List<Long> findUnprocessed(@Param("before") LocalDateTime before, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package ru.netology.cloudStorage.repository;
+
+import ru.netology.cloudStorage.util.FileCursor;
+import ru.netology.cloudStorage.util.FileSortKey;
+import ru.netology.cloudStorage.util.SearchCursor;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface FileRepositoryCustom {
+
+    /**
+     * Страница файлов пользователя: сортировка, seek-предикат по курсору и LIMIT выполняются в БД.
+     */
+    List<FileRow> findPage(Long userId, FileSortKey sortKey, boolean descending, FileCursor after, int limit);
+
+    /**
+     * Поиск по имени: подстрока без учёта регистра (триграммный индекс) или префикс
+     * с учётом регистра (btree в порядке байтов). Сортировка по сходству или по имени, keyset по курсору.
+     */
+    List<SearchRow> search(Long userId, String query, boolean prefix, boolean byRelevance,
+                           SearchCursor after, int limit);
+
+    /**
+     * Удаление набора файлов одним запросом (пакетные операции). Возвращает id строк,
+     * удалённых этим запросом: строки, которые уже удалила другая транзакция, в него не входят.
+     */
+    Set<Long> deleteAllOwned(Long userId, Collection<Long> ids);
+
+    /**
+     * Переименования одним JDBC-пакетом условных UPDATE только колонки name: строка меняется,
+     * если она всё ещё принадлежит пользователю, носит прежнее имя и новое имя у пользователя свободно.
+     * Возвращает исход каждого переименования в порядке списка; занятое имя не прерывает остальные.
+     */
+    List<RenameOutcome> renameAllOwned(Long userId, List<Rename> renames);
+
+    enum RenameOutcome {
+        RENAMED,
+        /** Строку удалили или переименовали после чтения */
+        NOT_FOUND,
+        NAME_TAKEN
+    }
+
+    record Rename(Long id, String oldName, String newName) {
+    }
+
+    record FileRow(Long id, String filename, Long size, LocalDateTime uploadDate) {
+    }
+
+    record SearchRow(Long id, String filename, Long size, float score) {
+    }
+}
@@ -0,0 +1,253 @@
+package ru.netology.cloudStorage.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.hibernate.Session;
+import ru.netology.cloudStorage.util.FileCursor;
+import ru.netology.cloudStorage.util.FileSortKey;
+import ru.netology.cloudStorage.util.SearchCursor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FileRepositoryImpl implements FileRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<FileRow> findPage(Long userId, FileSortKey sortKey, boolean descending, FileCursor after, int limit) {
+        // Колонка и направление берутся только из enum, пользовательский ввод в SQL не попадает
+        String column = "f." + sortKey.getColumn();
+        String direction = descending ? "DESC" : "ASC";
+        String comparison = descending ? "<" : ">";
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT f.id, f.name, f.size, f.upload_date FROM files f WHERE f.user_id = :userId");
+        if (after != null) {
+            // Сравнение кортежей PostgreSQL выполняет одним диапазонным проходом по индексу
+            if (sortKey.needsIdTiebreak()) {
+                sql.append(" AND (").append(column).append(", f.id) ").append(comparison).append(" (:value, :id)");
+            } else {
+                sql.append(" AND ").append(column).append(' ').append(comparison).append(" :value");
+            }
+        }
+        sql.append(" ORDER BY ").append(column).append(' ').append(direction);
+        if (sortKey.needsIdTiebreak()) {
+            sql.append(", f.id ").append(direction);
+        }
+        sql.append(" LIMIT :limit");
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+                .setParameter("userId", userId)
+                .setParameter("limit", limit);
+        if (after != null) {
+            query.setParameter("value", after.typedValue());
+            if (sortKey.needsIdTiebreak()) {
+                query.setParameter("id", after.id());
+            }
+        }
+
+        List<Object[]> rows = query.getResultList();
+        List<FileRow> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new FileRow(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    row[2] == null ? null : ((Number) row[2]).longValue(),
+                    toLocalDateTime(row[3])));
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Long> deleteAllOwned(Long userId, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM files WHERE user_id = ? AND id = ANY (?) RETURNING id")) {
+                statement.setLong(1, userId);
+                statement.setArray(2, connection.createArrayOf("bigint", ids.toArray()));
+                Set<Long> deleted = new HashSet<>();
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        deleted.add(rows.getLong(1));
+                    }
+                }
+                return deleted;
+            }
+        });
+    }
+
+    @Override
+    public List<RenameOutcome> renameAllOwned(Long userId, List<Rename> renames) {
+        if (renames.isEmpty()) {
+            return List.of();
+        }
+        // Отложенные изменения уходят раньше пакета, чтобы порядок записей в транзакции сохранился
+        entityManager.flush();
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            Savepoint batch = connection.setSavepoint();
+            try {
+                int[] counts = executeRenames(connection, userId, renames);
+                connection.releaseSavepoint(batch);
+                List<RenameOutcome> outcomes = new ArrayList<>(renames.size());
+                for (int i = 0; i < renames.size(); i++) {
+                    outcomes.add(outcome(connection, userId, renames.get(i), counts[i]));
+                }
+                return outcomes;
+            } catch (SQLException e) {
+                if (!isUniqueViolation(e)) {
+                    throw e;
+                }
+                connection.rollback(batch);
+            }
+            // Имя заняла параллельная транзакция, которую NOT EXISTS ещё не видел:
+            // переименования повторяются по одному, каждое под своей точкой сохранения
+            List<RenameOutcome> outcomes = new ArrayList<>(renames.size());
+            for (Rename rename : renames) {
+                Savepoint single = connection.setSavepoint();
+                try {
+                    int count = executeRenames(connection, userId, List.of(rename))[0];
+                    connection.releaseSavepoint(single);
+                    outcomes.add(outcome(connection, userId, rename, count));
+                } catch (SQLException e) {
+                    if (!isUniqueViolation(e)) {
+                        throw e;
+                    }
+                    connection.rollback(single);
+                    outcomes.add(RenameOutcome.NAME_TAKEN);
+                }
+            }
+            return outcomes;
+        });
+    }
+
+    private static int[] executeRenames(Connection connection, Long userId, List<Rename> renames)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE files SET name = ? WHERE id = ? AND user_id = ? AND name = ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM files t WHERE t.user_id = ? AND t.name = ?)")) {
+            for (Rename rename : renames) {
+                statement.setString(1, rename.newName());
+                statement.setLong(2, rename.id());
+                statement.setLong(3, userId);
+                statement.setString(4, rename.oldName());
+                statement.setLong(5, userId);
+                statement.setString(6, rename.newName());
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        }
+    }
+
+    /**
+     * Ноль обновлённых строк значит либо занятое имя, либо пропавшую строку: если строка
+     * на месте, помешало имя.
+     */
+    private static RenameOutcome outcome(Connection connection, Long userId, Rename rename, int count)
+            throws SQLException {
+        if (count > 0) {
+            return RenameOutcome.RENAMED;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM files WHERE id = ? AND user_id = ? AND name = ?")) {
+            statement.setLong(1, rename.id());
+            statement.setLong(2, userId);
+            statement.setString(3, rename.oldName());
+            try (ResultSet row = statement.executeQuery()) {
+                return row.next() ? RenameOutcome.NAME_TAKEN : RenameOutcome.NOT_FOUND;
+            }
+        }
+    }
+
+    static boolean isUniqueViolation(SQLException e) {
+        for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+            if ("23505".equals(cause.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<SearchRow> search(Long userId, String query, boolean prefix, boolean byRelevance,
+                                  SearchCursor after, int limit) {
+        // COLLATE "C" совпадает с индексом idx_files_user_name_c: порядок имён — побайтовый
+        String name = "(f.name COLLATE \"C\")";
+        String score = "similarity(f.name, :query)";
+
+        StringBuilder sql = new StringBuilder("SELECT f.id, f.name, f.size, ")
+                .append(byRelevance ? score : "0").append(" FROM files f WHERE f.user_id = :userId AND ");
+        sql.append(prefix ? name + " LIKE :pattern" : "f.name ILIKE :pattern");
+        if (after != null) {
+            if (byRelevance) {
+                sql.append(" AND (").append(score).append(" < :score OR (")
+                        .append(score).append(" = :score AND ").append(name).append(" > :name))");
+            } else {
+                sql.append(" AND ").append(name).append(" > :name");
+            }
+        }
+        sql.append(" ORDER BY ");
+        if (byRelevance) {
+            sql.append(score).append(" DESC, ");
+        }
+        sql.append(name).append(" LIMIT :limit");
+
+        Query search = entityManager.createNativeQuery(sql.toString())
+                .setParameter("userId", userId)
+                .setParameter("pattern", likePattern(query, prefix))
+                .setParameter("limit", limit);
+        if (byRelevance) {
+            search.setParameter("query", query);
+        }
+        if (after != null) {
+            search.setParameter("name", after.name());
+            if (byRelevance) {
+                search.setParameter("score", after.score());
+            }
+        }
+
+        List<Object[]> rows = search.getResultList();
+        List<SearchRow> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new SearchRow(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    row[2] == null ? null : ((Number) row[2]).longValue(),
+                    ((Number) row[3]).floatValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Шаблон LIKE из пользовательской строки: %, _ и \ экранируются и совпадают буквально.
+     */
+    static String likePattern(String query, boolean prefix) {
+        String escaped = query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return prefix ? escaped + "%" : "%" + escaped + "%";
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
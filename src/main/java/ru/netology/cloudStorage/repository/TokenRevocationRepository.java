@@ -0,0 +1,27 @@
+package ru.netology.cloudStorage.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.cloudStorage.entity.TokenRevocation;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+    /**
+     * Действующие отзывы, сделанные начиная с since: при старте — все, потом — новые, в том числе с других узлов.
+     */
+    @Query("SELECT r FROM TokenRevocation r WHERE r.revokedAt >= :since AND r.expiresAt > :now")
+    List<TokenRevocation> findActiveSince(@Param("since") LocalDateTime since, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM TokenRevocation r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
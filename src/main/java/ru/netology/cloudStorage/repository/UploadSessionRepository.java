@@ -0,0 +1,50 @@
+package ru.netology.cloudStorage.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.cloudStorage.entity.UploadSession;
+import ru.netology.cloudStorage.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    Optional<UploadSession> findByIdAndUser(String id, User user);
+
+    /**
+     * Отмечает часть полученной. У каждой части своя строка,
+     * поэтому параллельные загрузки частей не конкурируют за строку сессии.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO upload_session_chunks (session_id, chunk_index, received_at) " +
+            "VALUES (:sessionId, :index, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (session_id, chunk_index) DO UPDATE SET received_at = CURRENT_TIMESTAMP",
+            nativeQuery = true)
+    int markChunkReceived(@Param("sessionId") String sessionId, @Param("index") int index);
+
+    @Query(value = "SELECT chunk_index FROM upload_session_chunks WHERE session_id = :sessionId " +
+            "ORDER BY chunk_index",
+            nativeQuery = true)
+    List<Integer> findReceivedChunks(@Param("sessionId") String sessionId);
+
+    @Query(value = "SELECT COUNT(*) FROM upload_session_chunks WHERE session_id = :sessionId",
+            nativeQuery = true)
+    long countReceivedChunks(@Param("sessionId") String sessionId);
+
+    /**
+     * Сессии без активности с cutoff: созданы раньше и ни одна часть не пришла позже.
+     */
+    @Query(value = "SELECT s.id FROM upload_sessions s WHERE s.created_at < :cutoff " +
+            "AND NOT EXISTS (SELECT 1 FROM upload_session_chunks c " +
+            "WHERE c.session_id = s.id AND c.received_at >= :cutoff)",
+            nativeQuery = true)
+    List<String> findAbandoned(@Param("cutoff") LocalDateTime cutoff);
+}
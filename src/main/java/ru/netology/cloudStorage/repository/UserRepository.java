@@ -1,13 +1,32 @@
 package ru.netology.cloudStorage.repository;
 
 import ru.netology.cloudStorage.entity.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByLogin(String login);
     boolean existsByLogin(String login);
-}
\ No newline at end of file
+
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Limit limit);
+
+    /**
+     * Версия списка файлов не отображена в сущность: User кэшируется вместе с токеном
+     * и не должен устаревать при каждом изменении файлов.
+     */
+    @Query(value = "SELECT list_version FROM users WHERE id = :userId", nativeQuery = true)
+    Optional<Long> findListVersion(@Param("userId") Long userId);
+
+    @Modifying
+    @Query(value = "UPDATE users SET list_version = list_version + 1 WHERE id = :userId", nativeQuery = true)
+    int incrementListVersion(@Param("userId") Long userId);
+}
@@ -0,0 +1,67 @@
+package ru.netology.cloudStorage.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.cloudStorage.entity.UserUsage;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface UserUsageRepository extends JpaRepository<UserUsage, Long> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO user_usage (user_id, used_bytes, file_count, updated_at) " +
+            "VALUES (:userId, 0, 0, CURRENT_TIMESTAMP) ON CONFLICT (user_id) DO NOTHING",
+            nativeQuery = true)
+    int ensure(@Param("userId") Long userId);
+
+    /**
+     * Увеличение счётчиков, только если после него занятое место не превысит квоту.
+     * 0 — квота превышена. Строка остаётся заблокированной до конца транзакции загрузки,
+     * поэтому параллельные загрузки одного пользователя не превысят квоту вместе.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserUsage u SET u.usedBytes = u.usedBytes + :bytes, u.fileCount = u.fileCount + :files, " +
+            "u.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE u.userId = :userId AND u.usedBytes + :bytes <= COALESCE(u.quotaBytes, :limit)")
+    int charge(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("files") long files,
+               @Param("limit") long limit);
+
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE user_usage SET used_bytes = GREATEST(0, used_bytes + :bytes), " +
+            "file_count = GREATEST(0, file_count + :files), updated_at = CURRENT_TIMESTAMP " +
+            "WHERE user_id = :userId",
+            nativeQuery = true)
+    int add(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("files") long files);
+
+    /**
+     * Блокировка счётчиков перед пересчётом: загрузка, начавшаяся раньше, успеет закоммитить
+     * и файл, и своё приращение, а начавшаяся позже прибавит своё к пересчитанному значению.
+     */
+    @Query(value = "SELECT user_id FROM user_usage WHERE user_id IN (:ids) ORDER BY user_id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockAll(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Пересчёт счётчиков по files одним запросом на пачку пользователей.
+     * Возвращает число исправленных (или созданных) строк.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO user_usage (user_id, used_bytes, file_count, updated_at) " +
+            "SELECT u.id, COALESCE(SUM(f.size), 0), COUNT(f.id), CURRENT_TIMESTAMP " +
+            "FROM users u LEFT JOIN files f ON f.user_id = u.id WHERE u.id IN (:ids) GROUP BY u.id " +
+            "ON CONFLICT (user_id) DO UPDATE SET used_bytes = EXCLUDED.used_bytes, " +
+            "file_count = EXCLUDED.file_count, updated_at = EXCLUDED.updated_at " +
+            "WHERE user_usage.used_bytes <> EXCLUDED.used_bytes OR user_usage.file_count <> EXCLUDED.file_count",
+            nativeQuery = true)
+    int reconcile(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,56 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учёт чтений файлов для многоуровневого хранения. Чтения копятся в памяти
+ * и периодически сбрасываются в files, чтобы скачивание не делало UPDATE.
+ */
+@Component
+@Slf4j
+public class AccessTracker {
+
+    private final FileRepository fileRepository;
+    private final boolean enabled;
+    private final Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public AccessTracker(FileRepository fileRepository, StorageProperties storageProperties) {
+        this.fileRepository = fileRepository;
+        this.enabled = storageProperties.getTiering().isEnabled();
+    }
+
+    public void record(Long fileId) {
+        if (enabled && fileId != null) {
+            pending.computeIfAbsent(fileId, id -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Чтение, пришедшее между remove и sum, может потеряться: для статистики это допустимо.
+     */
+    @Scheduled(fixedDelayString = "${cloud.storage.tiering.access-flush-interval-ms:10000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int flushed = 0;
+        for (Long fileId : pending.keySet()) {
+            LongAdder count = pending.remove(fileId);
+            if (count != null && count.sum() > 0) {
+                fileRepository.recordAccess(fileId, count.sum(), now);
+                flushed++;
+            }
+        }
+        log.debug("Flushed access counts for {} files", flushed);
+    }
+}
@@ -0,0 +1,212 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP из нескольких файлов, который пишется прямо в ответ: без временного файла,
+ * память — буфер копирования и буфер ZipOutputStream. Уже сжатые форматы кладутся
+ * без пересжатия (STORED), остальное — DEFLATED. ZIP64 ZipOutputStream включает сам,
+ * когда файл больше 4 ГБ или файлов больше 65535.
+ * Пока текущий файл пишется в архив, следующий уже читается отдельным потоком:
+ * для STORED это нужная заранее CRC-32, для остальных — прогрев page cache.
+ */
+@Service
+@Slf4j
+public class ArchiveService {
+
+    private final FileStorageService fileStorageService;
+    private final BufferPool bufferPool;
+    private final StorageMetrics storageMetrics;
+    private final StorageProperties.ArchiveConfig config;
+    private final Set<String> storedExtensions;
+
+    public ArchiveService(FileStorageService fileStorageService, BufferPool bufferPool,
+                          StorageMetrics storageMetrics, StorageProperties storageProperties) {
+        this.fileStorageService = fileStorageService;
+        this.bufferPool = bufferPool;
+        this.storageMetrics = storageMetrics;
+        this.config = storageProperties.getArchive();
+        this.storedExtensions = config.getStoredExtensions().stream()
+                .map(extension -> extension.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public int getMaxFiles() {
+        return config.getMaxFiles();
+    }
+
+    /**
+     * Пишет архив в out и возвращает число записанных байт. Поток out не закрывается.
+     */
+    public long write(List<File> files, OutputStream out, String user) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(out);
+        ByteBuffer buffer = bufferPool.acquire();
+        try (StorageMetrics.Transfer transfer = storageMetrics.startDownload(user);
+             ExecutorService prefetcher = Executors.newSingleThreadExecutor(
+                     Thread.ofVirtual().name("archive-prefetch-", 0).factory())) {
+            // При ошибке архив не закрывается: close() дописал бы центральный каталог,
+            // и оборванный архив выглядел бы целым
+            ZipOutputStream zip = new ZipOutputStream(counting);
+            zip.setLevel(config.getLevel());
+
+            Future<Entry> next = files.isEmpty() ? null : prefetcher.submit(() -> prepare(files.get(0)));
+            try {
+                for (int i = 0; i < files.size(); i++) {
+                    Entry entry = await(next);
+                    File following = i + 1 < files.size() ? files.get(i + 1) : null;
+                    next = following != null ? prefetcher.submit(() -> prepare(following)) : null;
+
+                    zip.putNextEntry(entry.zipEntry());
+                    try (InputStream in = open(entry.file(), entry.path())) {
+                        copy(in, zip, buffer.array());
+                    }
+                    zip.closeEntry();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Иначе закрытие исполнителя ждало бы, пока дочитается следующий файл
+                if (next != null) {
+                    next.cancel(true);
+                }
+                throw e;
+            }
+            zip.close();
+
+            transfer.complete(counting.count);
+            log.info("Archive of {} files streamed: {} bytes", files.size(), counting.count);
+            return counting.count;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    boolean isStored(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 && storedExtensions.contains(filename.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Запись архива для файла: путь, метод сжатия и, если файл прочитан заранее, CRC-32.
+     * Для DEFLATED известные размер и CRC ZipOutputStream сверяет с записанным содержимым.
+     */
+    private Entry prepare(File file) throws IOException {
+        Path path = fileStorageService.resolveForRead(file);
+        if (!Files.isReadable(path)) {
+            throw new IOException("File not found or not readable: " + file.getFilename());
+        }
+
+        ZipEntry zipEntry = new ZipEntry(file.getFilename());
+        if (file.getUploadDate() != null) {
+            zipEntry.setTime(file.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        boolean stored = isStored(file.getFilename());
+        long size = file.getSize() != null ? file.getSize() : -1;
+        if (stored || (size >= 0 && size <= config.getPrefetchMaxBytes())) {
+            long[] crcAndSize = checksum(file, path);
+            zipEntry.setCrc(crcAndSize[0]);
+            zipEntry.setSize(crcAndSize[1]);
+        }
+        if (stored) {
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setCompressedSize(zipEntry.getSize());
+        }
+        return new Entry(file, path, zipEntry);
+    }
+
+    private long[] checksum(File file, Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        long size = 0;
+        ByteBuffer buffer = bufferPool.acquire();
+        try (InputStream in = open(file, path)) {
+            byte[] array = buffer.array();
+            for (int read; (read = in.read(array, 0, array.length)) > 0; ) {
+                crc.update(array, 0, read);
+                size += read;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        return new long[]{crc.getValue(), size};
+    }
+
+    /**
+     * Содержимое в исходном виде: сжатый при хранении файл распаковывается.
+     */
+    private static InputStream open(File file, Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return file.getCodec() != null ? ContentCodec.fromEncoding(file.getCodec()).decoder(in) : in;
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] array) throws IOException {
+        for (int read; (read = in.read(array, 0, array.length)) > 0; ) {
+            out.write(array, 0, read);
+        }
+    }
+
+    private static Entry await(Future<Entry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Archive interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Could not prepare archive entry", e.getCause());
+        }
+    }
+
+    private record Entry(File file, Path path, ZipEntry zipEntry) {
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Поток ответа закрывает контейнер
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.BlobRepository;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Контентно-адресуемое хранилище: каждый blob хранится один раз под своим SHA-256,
+ * а таблица blobs считает ссылки на него из files.
+ * Файлы blob-ов меняются вместе с транзакцией, в которой меняется счётчик: новый blob
+ * удаляется при её откате, а снятый с последней ссылкой откладывается в надгробие
+ * и удаляется только после коммита.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobService {
+
+    static final String BLOB_DIR = "cas";
+    private static final String TEMP_DIR = ".tmp";
+    private static final String TOMBSTONE_SUFFIX = ".tomb";
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final BlobRepository blobRepository;
+    private final StorageProperties storageProperties;
+    private final DiskIoLimiter diskIoLimiter;
+    private Path rootLocation;
+    private Path tempLocation;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            rootLocation = Paths.get(storageProperties.getPath()).toAbsolutePath().normalize();
+            tempLocation = rootLocation.resolve(TEMP_DIR);
+            Files.createDirectories(rootLocation.resolve(BLOB_DIR));
+            Files.createDirectories(tempLocation);
+            purgeTempFiles();
+            recoverTombstones();
+            log.info("Deduplicated blob store initialized at: {}", rootLocation.resolve(BLOB_DIR));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize blob store", e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return storageProperties.getDedup().isEnabled();
+    }
+
+    public Path createTempFile() {
+        return tempLocation.resolve(UUID.randomUUID() + ".part");
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static String normalizeDigest(String digest) {
+        String normalized = digest == null ? "" : digest.trim().toLowerCase();
+        if (!DIGEST_PATTERN.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Invalid SHA-256 digest: " + digest);
+        }
+        return normalized;
+    }
+
+    public static String relativePath(String digest) {
+        return BLOB_DIR + "/" + digest.substring(0, 2) + "/" + digest;
+    }
+
+    /**
+     * Регистрирует ссылку на blob и переносит временный файл на место blob-а,
+     * если такого содержимого ещё нет. Возвращает путь blob-а относительно корня хранилища.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String commit(Path tempFile, String digest, long size) throws IOException {
+        // Строка blobs заблокирована до конца транзакции, поэтому параллельные
+        // загрузки и удаления того же содержимого не пересекаются
+        blobRepository.acquire(digest, size);
+        // Первая ссылка: файл на месте blob-а, если он есть, остался от откаченной
+        // транзакции, и полагаться на него нельзя — его заменяет свой
+        boolean created = blobRepository.refCount(digest) == 1;
+
+        String relative = relativePath(digest);
+        Path target = rootLocation.resolve(relative);
+        boolean deduplicated = diskIoLimiter.call(() -> {
+            if (!created && Files.exists(target)) {
+                Files.deleteIfExists(tempFile);
+                return true;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            return false;
+        });
+        if (created) {
+            deleteOnRollback(digest, target);
+        }
+        log.info(deduplicated ? "Deduplicated blob {} ({} bytes)" : "Stored new blob {} ({} bytes)", digest, size);
+        return relative;
+    }
+
+    /**
+     * Добавляет ссылку на уже хранящийся blob без передачи байт.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Optional<String> acquireExisting(String digest, long size) {
+        if (blobRepository.acquireExisting(digest, size) == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(relativePath(digest));
+    }
+
+    /**
+     * Снимает ссылку; файл удаляется только вместе с последней ссылкой и только после коммита.
+     * До коммита он лежит в надгробии и при откате возвращается на место.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String digest) throws IOException {
+        blobRepository.release(digest);
+        if (blobRepository.deleteUnreferenced(digest) > 0) {
+            Path path = rootLocation.resolve(relativePath(digest));
+            Path tombstone = tempLocation.resolve(digest + "." + UUID.randomUUID() + TOMBSTONE_SUFFIX);
+            // Перенос, а не удаление после коммита: параллельная загрузка того же содержимого,
+            // дождавшись блокировки строки, не найдёт старый файл и положит свой
+            boolean moved = diskIoLimiter.call(() -> {
+                if (!Files.exists(path)) {
+                    return false;
+                }
+                Files.move(path, tombstone, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            });
+            if (moved) {
+                buryAfterCompletion(digest, path, tombstone);
+            }
+            log.info("Blob {} unlinked, no references left", digest);
+        }
+    }
+
+    /**
+     * Откат транзакции, создавшей blob, удаляет его файл. Пока шла очистка, следующая загрузка
+     * того же содержимого могла положить на это место свой файл: он узнаётся по fileKey и остаётся.
+     */
+    private void deleteOnRollback(String digest, Path target) throws IOException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Object fileKey = fileKey(target);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                Path tombstone = tempLocation.resolve(digest + "." + UUID.randomUUID() + TOMBSTONE_SUFFIX);
+                try {
+                    Files.move(target, tombstone, StandardCopyOption.ATOMIC_MOVE);
+                    if (fileKey != null && !fileKey.equals(fileKey(tombstone))) {
+                        Files.move(tombstone, target, StandardCopyOption.ATOMIC_MOVE);
+                        return;
+                    }
+                    Files.delete(tombstone);
+                    log.info("Blob {} of rolled back upload removed", digest);
+                } catch (IOException e) {
+                    log.warn("Could not remove blob {} of rolled back upload: {}", digest, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void buryAfterCompletion(String digest, Path path, Path tombstone) throws IOException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Files.deleteIfExists(tombstone);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        Files.deleteIfExists(tombstone);
+                    } else {
+                        // Если загрузка того же содержимого уже вернула файл, байты те же
+                        Files.move(tombstone, path, StandardCopyOption.ATOMIC_MOVE);
+                        log.info("Blob {} restored after rollback", digest);
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not settle tombstone of blob {}: {}", digest, e.getMessage());
+                }
+            }
+        });
+    }
+
+    private static Object fileKey(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+    }
+
+    private void purgeTempFiles() throws IOException {
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tempLocation, "*.part")) {
+            for (Path leftover : leftovers) {
+                Files.deleteIfExists(leftover);
+                log.warn("Removed abandoned temp file: {}", leftover.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Надгробия, оставшиеся после остановки посреди транзакции: если строка blob-а есть,
+     * удаление откатилось и файл возвращается на место, иначе удаляется.
+     */
+    private void recoverTombstones() throws IOException {
+        try (DirectoryStream<Path> tombstones = Files.newDirectoryStream(tempLocation, "*" + TOMBSTONE_SUFFIX)) {
+            for (Path tombstone : tombstones) {
+                String digest = tombstone.getFileName().toString().split("\\.", 2)[0];
+                Path path = rootLocation.resolve(relativePath(digest));
+                if (blobRepository.existsById(digest) && !Files.exists(path)) {
+                    Files.createDirectories(path.getParent());
+                    Files.move(tombstone, path, StandardCopyOption.ATOMIC_MOVE);
+                    log.warn("Restored blob {} from tombstone", digest);
+                } else {
+                    Files.deleteIfExists(tombstone);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Пул буферов для потокового копирования файлов.
+ * Буферы heap-овые: они нужны и для InputStream.read(byte[]), и для FileChannel.write.
+ */
+@Component
+@Slf4j
+public class BufferPool {
+
+    private final BlockingQueue<ByteBuffer> pool;
+    private final int bufferSize;
+
+    public BufferPool(StorageProperties storageProperties) {
+        StorageProperties.UploadConfig config = storageProperties.getUpload();
+        this.bufferSize = config.getBufferSize();
+        this.pool = new ArrayBlockingQueue<>(Math.max(1, config.getBufferPoolSize()));
+        log.info("Buffer pool initialized: {} buffers of {} bytes", config.getBufferPoolSize(), bufferSize);
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(bufferSize);
+        }
+        return buffer.clear();
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize) {
+            pool.offer(buffer.clear());
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,46 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 исходного содержимого. У файла из хранилища blob-ов это и есть его digest, файл не читается.
+ */
+@Component
+@Order(10)
+@RequiredArgsConstructor
+public class ChecksumStage implements ProcessingStage {
+
+    private final BufferPool bufferPool;
+
+    @Override
+    public String name() {
+        return "checksum";
+    }
+
+    @Override
+    public void process(Context context) throws IOException {
+        if (context.getFile().getBlobDigest() != null) {
+            context.setChecksum(context.getFile().getBlobDigest());
+            return;
+        }
+        MessageDigest digest = BlobService.newDigest();
+        ByteBuffer buffer = bufferPool.acquire();
+        try (InputStream in = context.open()) {
+            byte[] array = buffer.array();
+            for (int read; (read = in.read(array, 0, array.length)) > 0; ) {
+                digest.update(array, 0, read);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        context.setChecksum(HexFormat.of().formatHex(digest.digest()));
+    }
+}
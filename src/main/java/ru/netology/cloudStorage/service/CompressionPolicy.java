@@ -0,0 +1,115 @@
+package ru.netology.cloudStorage.service;
+
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Решает, сжимать ли файл при сохранении: по расширению, а если оно ничего не говорит,
+ * по первым байтам содержимого (сигнатуры сжатых форматов, доля текстовых байт).
+ */
+@Component
+public class CompressionPolicy {
+
+    private static final Set<String> INCOMPRESSIBLE_EXTENSIONS = Set.of(
+            "gz", "tgz", "zip", "zst", "bz2", "xz", "7z", "rar", "jar", "docx", "xlsx", "pptx",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "mp3", "mp4", "mkv", "avi", "mov", "webm", "pdf");
+
+    private static final byte[][] COMPRESSED_SIGNATURES = {
+            {0x1f, (byte) 0x8b},                         // gzip
+            {0x50, 0x4b, 0x03, 0x04},                    // zip и офисные форматы
+            {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd},      // zstd
+            {0x42, 0x5a, 0x68},                          // bzip2
+            {(byte) 0xfd, 0x37, 0x7a, 0x58, 0x5a},       // xz
+            {0x37, 0x7a, (byte) 0xbc, (byte) 0xaf},      // 7z
+            {(byte) 0xff, (byte) 0xd8, (byte) 0xff},     // jpeg
+            {(byte) 0x89, 0x50, 0x4e, 0x47},             // png
+            {0x25, 0x50, 0x44, 0x46},                    // pdf
+    };
+
+    /**
+     * Доля печатаемых байт в начале файла, начиная с которой он считается текстом.
+     */
+    private static final double TEXT_RATIO = 0.95;
+
+    private final StorageProperties.CompressionConfig config;
+    private final Set<String> compressibleExtensions;
+
+    public CompressionPolicy(StorageProperties storageProperties) {
+        this.config = storageProperties.getCompression();
+        this.compressibleExtensions = config.getExtensions().stream()
+                .map(extension -> extension.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public int getLevel() {
+        return config.getLevel();
+    }
+
+    /**
+     * Кодек для файла или null, если хранить как есть.
+     *
+     * @param prefix    первые байты содержимого
+     * @param length    сколько байт в prefix прочитано
+     * @param complete  содержимое прочитано целиком, length — его полный размер
+     */
+    public ContentCodec choose(String filename, byte[] prefix, int length, boolean complete) {
+        if (!config.isEnabled() || (complete && length < config.getMinSize())) {
+            return null;
+        }
+        String extension = extension(filename);
+        if (INCOMPRESSIBLE_EXTENSIONS.contains(extension) || hasCompressedSignature(prefix, length)) {
+            return null;
+        }
+        if (compressibleExtensions.contains(extension) || looksLikeText(prefix, length)) {
+            return config.getCodec();
+        }
+        return null;
+    }
+
+    private static String extension(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static boolean hasCompressedSignature(byte[] prefix, int length) {
+        outer:
+        for (byte[] signature : COMPRESSED_SIGNATURES) {
+            if (length < signature.length) {
+                continue;
+            }
+            for (int i = 0; i < signature.length; i++) {
+                if (prefix[i] != signature[i]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Текст в ASCII или UTF-8: без нулевых байт и почти без управляющих символов.
+     * Байты старше 0x7F считаются печатаемыми, это многобайтовые символы UTF-8.
+     */
+    private static boolean looksLikeText(byte[] prefix, int length) {
+        if (length == 0) {
+            return false;
+        }
+        int printable = 0;
+        for (int i = 0; i < length; i++) {
+            int b = prefix[i] & 0xFF;
+            if (b == 0) {
+                return false;
+            }
+            if (b >= 0x20 || b == '\n' || b == '\r' || b == '\t') {
+                printable++;
+            }
+        }
+        return printable >= length * TEXT_RATIO;
+    }
+}
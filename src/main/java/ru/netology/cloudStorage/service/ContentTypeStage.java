@@ -0,0 +1,36 @@
+package ru.netology.cloudStorage.service;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+
+/**
+ * Тип содержимого по первым байтам, а если сигнатура не распознана — по расширению имени.
+ */
+@Component
+@Order(20)
+public class ContentTypeStage implements ProcessingStage {
+
+    static final String DEFAULT_TYPE = "application/octet-stream";
+
+    @Override
+    public String name() {
+        return "content_type";
+    }
+
+    @Override
+    public void process(Context context) throws IOException {
+        String type;
+        try (InputStream in = new BufferedInputStream(context.open())) {
+            type = URLConnection.guessContentTypeFromStream(in);
+        }
+        if (type == null) {
+            type = URLConnection.guessContentTypeFromName(context.getFile().getFilename());
+        }
+        context.setContentType(type != null ? type : DEFAULT_TYPE);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение числа одновременных дисковых операций.
+ * С виртуальными потоками число запросов в работе почти не ограничено,
+ * поэтому очередь к диску держится здесь, а не в пуле потоков контейнера.
+ * Разрешение берётся на одну операцию (запись чанка, удаление, перенос),
+ * а не на всю передачу, чтобы медленный клиент не держал его, ожидая сеть.
+ */
+@Component
+@Slf4j
+public class DiskIoLimiter {
+
+    private final Semaphore permits;
+    private final long timeoutMs;
+
+    public DiskIoLimiter(StorageProperties storageProperties) {
+        StorageProperties.ConcurrencyConfig config = storageProperties.getConcurrency();
+        this.permits = new Semaphore(config.getDiskPermits(), true);
+        this.timeoutMs = config.getDiskAcquireTimeoutMs();
+        log.info("Disk I/O limiter initialized: {} permits", config.getDiskPermits());
+    }
+
+    public <T> T call(IoCallable<T> operation) throws IOException {
+        acquire();
+        try {
+            return operation.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(IoRunnable operation) throws IOException {
+        acquire();
+        try {
+            operation.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private void acquire() throws IOException {
+        try {
+            if (!permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Storage is busy: no disk I/O permit within " + timeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for disk I/O permit");
+        }
+    }
+
+    @FunctionalInterface
+    public interface IoCallable<T> {
+        T call() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface IoRunnable {
+        void run() throws IOException;
+    }
+}
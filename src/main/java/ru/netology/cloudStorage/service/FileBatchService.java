@@ -0,0 +1,243 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.netology.cloudStorage.DTO.BatchItemResult;
+import ru.netology.cloudStorage.DTO.BatchRequest;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.repository.FileRepositoryCustom;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Пакетные удаления и переименования в одной транзакции. Все затронутые строки читаются
+ * одним запросом с IN, удаление — один DELETE по списку id, переименования — JDBC-пакет
+ * условных UPDATE имени. Файлы с диска удаляются параллельно после коммита.
+ * Конфликт имени с параллельной загрузкой возвращается как 409 этого переименования.
+ * Ошибка отдельного элемента не отменяет остальные: результат возвращается по каждому.
+ */
+@Service
+@Slf4j
+public class FileBatchService {
+
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final BlobService blobService;
+    private final DiskIoLimiter diskIoLimiter;
+    private final FileMetadataCache fileMetadataCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QuotaService quotaService;
+    private final FileListVersions fileListVersions;
+    private final StorageProperties.BatchConfig config;
+
+    public FileBatchService(FileRepository fileRepository, FileStorageService fileStorageService,
+                            BlobService blobService, DiskIoLimiter diskIoLimiter,
+                            FileMetadataCache fileMetadataCache, ApplicationEventPublisher eventPublisher,
+                            QuotaService quotaService, FileListVersions fileListVersions,
+                            StorageProperties storageProperties) {
+        this.fileRepository = fileRepository;
+        this.fileStorageService = fileStorageService;
+        this.blobService = blobService;
+        this.diskIoLimiter = diskIoLimiter;
+        this.fileMetadataCache = fileMetadataCache;
+        this.eventPublisher = eventPublisher;
+        this.quotaService = quotaService;
+        this.fileListVersions = fileListVersions;
+        this.config = storageProperties.getBatch();
+    }
+
+    /**
+     * Сначала выполняются удаления, затем переименования, каждое в порядке запроса.
+     * Имя, освобождённое удалением в этом же пакете, можно занять переименованием;
+     * имя, освобождаемое переименованием, — нельзя: порядок UPDATE в пакете не задан,
+     * и промежуточное состояние нарушило бы уникальность имени.
+     */
+    @Transactional
+    public List<BatchItemResult> apply(BatchRequest request, User user) throws IOException {
+        List<String> deletes = request.getDelete() != null ? request.getDelete() : List.of();
+        List<BatchRequest.Rename> renames = request.getRename() != null ? request.getRename() : List.of();
+        int items = deletes.size() + renames.size();
+        if (items > config.getMaxItems()) {
+            throw new IllegalArgumentException("Too many batch items: " + items + " (max " + config.getMaxItems() + ")");
+        }
+
+        Set<String> names = new HashSet<>(deletes);
+        for (BatchRequest.Rename rename : renames) {
+            names.add(rename.getFilename());
+            names.add(rename.getName());
+        }
+        names.remove(null);
+        Map<String, File> existing = new HashMap<>();
+        if (!names.isEmpty()) {
+            fileRepository.findByUserAndFilenameIn(user, names).forEach(file -> existing.put(file.getFilename(), file));
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(items);
+        Map<Long, File> deleted = new LinkedHashMap<>();
+        Map<Long, Integer> deleteSlots = new HashMap<>();
+        for (String filename : deletes) {
+            File file = filename != null ? existing.get(filename) : null;
+            if (file == null) {
+                results.add(BatchItemResult.failed(BatchItemResult.DELETE, filename, null, 404,
+                        "File not found: " + filename));
+            } else if (deleted.putIfAbsent(file.getId(), file) != null) {
+                results.add(BatchItemResult.failed(BatchItemResult.DELETE, filename, null, 409,
+                        "Duplicate batch item: " + filename));
+            } else {
+                deleteSlots.put(file.getId(), results.size());
+                results.add(BatchItemResult.ok(BatchItemResult.DELETE, filename, null));
+            }
+        }
+
+        List<Path> unlinks = new ArrayList<>();
+        List<File> removed = new ArrayList<>();
+        if (!deleted.isEmpty()) {
+            deleted.values().forEach(file -> fileMetadataCache.evict(user.getId(), file.getFilename()));
+            Set<Long> removedIds = fileRepository.deleteAllOwned(user.getId(), deleted.keySet());
+            for (File file : deleted.values()) {
+                if (removedIds.contains(file.getId())) {
+                    removed.add(file);
+                } else {
+                    // Строку успели удалить после чтения: ссылку на blob и квоту освободила та транзакция
+                    results.set(deleteSlots.get(file.getId()), BatchItemResult.failed(BatchItemResult.DELETE,
+                            file.getFilename(), null, 404, "File not found: " + file.getFilename()));
+                }
+            }
+        }
+        Set<String> claimed = new HashSet<>();
+        Set<Long> renamed = new HashSet<>();
+        List<File> renamedFiles = new ArrayList<>();
+        List<FileRepositoryCustom.Rename> updates = new ArrayList<>();
+        List<Integer> updateSlots = new ArrayList<>();
+        for (BatchRequest.Rename rename : renames) {
+            String from = rename.getFilename();
+            String to = rename.getName();
+            try {
+                fileStorageService.validateFilename(to);
+            } catch (RuntimeException e) {
+                results.add(BatchItemResult.failed(BatchItemResult.RENAME, from, to, 400, e.getMessage()));
+                continue;
+            }
+
+            File file = from != null ? existing.get(from) : null;
+            if (file == null || deleted.containsKey(file.getId())) {
+                results.add(BatchItemResult.failed(BatchItemResult.RENAME, from, to, 404, "File not found: " + from));
+            } else if (renamed.contains(file.getId())) {
+                results.add(BatchItemResult.failed(BatchItemResult.RENAME, from, to, 409,
+                        "Duplicate batch item: " + from));
+            } else if (isTaken(existing.get(to), deleted) || claimed.contains(to)) {
+                results.add(BatchItemResult.failed(BatchItemResult.RENAME, from, to, 409, "File already exists: " + to));
+            } else {
+                fileMetadataCache.evict(user.getId(), from);
+                claimed.add(to);
+                renamed.add(file.getId());
+                updates.add(new FileRepositoryCustom.Rename(file.getId(), from, to));
+                updateSlots.add(results.size());
+                results.add(BatchItemResult.ok(BatchItemResult.RENAME, from, to));
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            // Сущности не меняются: flush записал бы строку целиком и затёр бы параллельные
+            // изменения пути, уровня хранения, счётчиков чтений и результатов обработки
+            List<FileRepositoryCustom.RenameOutcome> outcomes = fileRepository.renameAllOwned(user.getId(), updates);
+            for (int i = 0; i < updates.size(); i++) {
+                FileRepositoryCustom.Rename update = updates.get(i);
+                switch (outcomes.get(i)) {
+                    case RENAMED -> {
+                        File file = existing.get(update.oldName());
+                        fileMetadataCache.put(file, update.newName());
+                        renamedFiles.add(file);
+                    }
+                    case NOT_FOUND -> results.set(updateSlots.get(i), BatchItemResult.failed(BatchItemResult.RENAME,
+                            update.oldName(), update.newName(), 404, "File not found: " + update.oldName()));
+                    // Имя заняла параллельная загрузка
+                    case NAME_TAKEN -> results.set(updateSlots.get(i), BatchItemResult.failed(BatchItemResult.RENAME,
+                            update.oldName(), update.newName(), 409, "File already exists: " + update.newName()));
+                }
+            }
+        }
+
+        // Ссылки на blob-ы снимаются после переименований: ошибка в них откатывает пакет
+        // до того, как тронуты файлы blob-ов
+        if (!removed.isEmpty()) {
+            // Одно обновление счётчиков на всю пачку удалений
+            quotaService.release(user.getId(), removed.stream().mapToLong(File::getSize).sum(), removed.size());
+            for (File file : removed) {
+                eventPublisher.publishEvent(new UploadPipeline.FileDeleted(file.getId()));
+                if (file.getBlobDigest() != null) {
+                    blobService.release(file.getBlobDigest());
+                } else {
+                    unlinks.add(fileStorageService.resolvePath(file));
+                }
+            }
+        }
+
+        if (!removed.isEmpty() || !renamedFiles.isEmpty()) {
+            fileListVersions.bump(user.getId());
+        }
+        afterCommit(() -> unlinkAll(unlinks));
+
+        log.info("Batch applied for user: {} ({} deleted, {} renamed, {} failed)", user.getLogin(),
+                removed.size(), renamedFiles.size(), results.size() - removed.size() - renamedFiles.size());
+        return results;
+    }
+
+    private static boolean isTaken(File target, Map<Long, File> deleted) {
+        return target != null && !deleted.containsKey(target.getId());
+    }
+
+    /**
+     * Строки уже удалены, поэтому ошибка удаления с диска не меняет результат элемента,
+     * а только оставляет файл-сироту в журнале.
+     */
+    void unlinkAll(List<Path> paths) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(config.getUnlinkParallelism(), paths.size()),
+                Thread.ofVirtual().name("batch-unlink-", 0).factory())) {
+            for (Path path : paths) {
+                executor.submit(() -> {
+                    try {
+                        diskIoLimiter.run(() -> Files.deleteIfExists(path));
+                    } catch (IOException e) {
+                        log.warn("Could not unlink {} after batch delete: {}", path, e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,315 @@
+package ru.netology.cloudStorage.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.util.ByteRange;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Отдача файлов с поддержкой Range (206, multipart/byteranges) и условных запросов.
+ * Байты идут из page cache в сокет через sendfile контейнера или FileChannel.transferTo,
+ * не проходя через heap. Сжатый при хранении файл отдаётся как есть с Content-Encoding,
+ * если клиент его принимает, иначе распаковывается на лету.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileDownloadService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final StorageProperties storageProperties;
+    private final StorageMetrics storageMetrics;
+    private final TransferThrottle transferThrottle;
+
+    public void serve(HttpServletRequest request, HttpServletResponse response,
+                      File file, Path path) throws IOException {
+        long size = file.getSize() != null ? file.getSize() : path.toFile().length();
+        long lastModified = lastModifiedMillis(file);
+        String encoding = null;
+        boolean decode = false;
+
+        if (file.getCodec() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsEncoding(request, file.getCodec())) {
+                // Range и длина относятся к сжатому представлению
+                encoding = file.getCodec();
+                size = file.getStoredSize() != null ? file.getStoredSize() : Files.size(path);
+            } else {
+                decode = true;
+            }
+        }
+        String etag = etag(size, lastModified, encoding);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, decode ? "none" : "bytes");
+
+        if (isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(file.getFilename(), StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+
+        List<ByteRange> ranges = null;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && !decode && isIfRangeSatisfied(request, etag, lastModified)) {
+            ranges = ByteRange.parse(rangeHeader, size);
+            if (ranges != null && ranges.size() > storageProperties.getDownload().getMaxRanges()) {
+                log.warn("Too many ranges requested ({}), serving whole file", ranges.size());
+                ranges = null;
+            }
+        }
+
+        boolean head = "HEAD".equals(request.getMethod());
+
+        if (ranges == null) {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(size);
+            if (head) {
+                return;
+            }
+            if (decode) {
+                sendDecoded(request, response, path, ContentCodec.fromEncoding(file.getCodec()), size);
+            } else {
+                send(request, response, path, 0, size);
+            }
+        } else if (ranges.isEmpty()) {
+            response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+        } else if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, size));
+            response.setContentLengthLong(range.length());
+            if (!head) {
+                send(request, response, path, range.start(), range.length());
+            }
+        } else {
+            sendMultipart(request, response, path, ranges, size, head);
+        }
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response,
+                      Path path, long start, long length) throws IOException {
+        try (StorageMetrics.Transfer transfer = storageMetrics.startDownload(user(request))) {
+            if (length >= storageProperties.getDownload().getSendfileThreshold()
+                    && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))
+                    && !transferThrottle.limitsBytes()) {
+                // Контейнер сам отправит файл через sendfile после выхода из обработчика
+                request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, start + length);
+                transfer.handOff(length);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                transfer(channel, start, length, Channels.newChannel(output(request, response)));
+            }
+            transfer.complete(length);
+        }
+    }
+
+    private void sendMultipart(HttpServletRequest request, HttpServletResponse response, Path path,
+                               List<ByteRange> ranges, long size, boolean head) throws IOException {
+        String boundary = UUID.randomUUID().toString();
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            contentLength += partHeader(boundary, range, size).length + range.length();
+        }
+        contentLength += closingDelimiter(boundary).length;
+
+        response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+
+        try (StorageMetrics.Transfer transfer = storageMetrics.startDownload(user(request))) {
+            OutputStream out = output(request, response);
+            WritableByteChannel target = Channels.newChannel(out);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                for (ByteRange range : ranges) {
+                    out.write(partHeader(boundary, range, size));
+                    transfer(channel, range.start(), range.length(), target);
+                }
+            }
+            out.write(closingDelimiter(boundary));
+            transfer.complete(contentLength);
+        }
+    }
+
+    private OutputStream output(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return transferThrottle.throttle(response.getOutputStream(), user(request));
+    }
+
+    private static String user(HttpServletRequest request) {
+        Object user = request.getAttribute(StorageMetrics.USER_ATTRIBUTE);
+        return user != null ? user.toString() : null;
+    }
+
+    private void sendDecoded(HttpServletRequest request, HttpServletResponse response, Path path,
+                             ContentCodec codec, long size) throws IOException {
+        try (StorageMetrics.Transfer transfer = storageMetrics.startDownload(user(request));
+             InputStream in = codec.decoder(Files.newInputStream(path))) {
+            long sent = in.transferTo(output(request, response));
+            if (sent != size) {
+                throw new IOException("Decoded size " + sent + " does not match stored size " + size);
+            }
+            transfer.complete(sent);
+        }
+    }
+
+    /**
+     * Принимает ли клиент кодировку: токен или * в Accept-Encoding без q=0.
+     */
+    static boolean acceptsEncoding(HttpServletRequest request, String encoding) {
+        String header = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (header == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String item : header.split(",")) {
+            String[] parts = item.trim().split(";");
+            String token = parts[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2).trim()) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (token.equalsIgnoreCase(encoding)) {
+                return !refused;
+            }
+            if (token.equals("*")) {
+                wildcard = !refused;
+            }
+        }
+        return wildcard;
+    }
+
+    private static void transfer(FileChannel channel, long start, long length,
+                                 WritableByteChannel target) throws IOException {
+        long position = start;
+        long remaining = length;
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, target);
+            if (sent <= 0) {
+                throw new IOException("File is shorter than expected at position " + position);
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    private static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || stripWeak(tag).equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private static boolean isIfRangeSatisfied(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        String trimmed = ifRange.trim();
+        if (trimmed.startsWith("\"") || trimmed.startsWith("W/")) {
+            // If-Range допускает только строгое сравнение
+            return trimmed.equals(etag);
+        }
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && date / 1000 == lastModified / 1000;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private static String etag(long size, long lastModified, String encoding) {
+        // У сжатого и исходного представлений разные ETag: их байты различаются
+        String suffix = encoding != null ? "-" + encoding : "";
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + suffix + "\"";
+    }
+
+    private static long lastModifiedMillis(File file) {
+        if (file.getUploadDate() == null) {
+            return 0;
+        }
+        return file.getUploadDate().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String contentRange(ByteRange range, long size) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + size;
+    }
+
+    private static byte[] partHeader(String boundary, ByteRange range, long size) {
+        return ("\r\n--" + boundary + "\r\n"
+                + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, size) + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] closingDelimiter(String boundary) {
+        return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
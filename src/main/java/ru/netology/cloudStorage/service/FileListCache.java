@@ -0,0 +1,149 @@
+package ru.netology.cloudStorage.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.cloudStorage.DTO.FileListPage;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.util.FileSortKey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * Ответы /list с ETag из версии списка файлов и параметров запроса.
+ * Версия читается первой в той же транзакции, что и страница, поэтому страница не старше версии
+ * (и читается с той же реплики). Совпавший If-None-Match стоит одного запроса версии;
+ * повтор того же запроса при неизменной версии отдаётся готовыми байтами JSON из кэша.
+ */
+@Component
+@Slf4j
+public class FileListCache {
+
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final FileStorageService fileStorageService;
+    private final FileListVersions fileListVersions;
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, Entry> cache;
+    private final boolean enabled;
+
+    public FileListCache(FileStorageService fileStorageService, FileListVersions fileListVersions,
+                         ObjectMapper objectMapper, StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        StorageProperties.ListCacheConfig config = storageProperties.getListCache();
+
+        this.fileStorageService = fileStorageService;
+        this.fileListVersions = fileListVersions;
+        this.objectMapper = objectMapper;
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .weigher((Key key, Entry entry) -> entry.weight())
+                .expireAfterWrite(Duration.ofSeconds(config.getTtlSeconds()))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "fileList");
+    }
+
+    /**
+     * Страница списка; если ifNoneMatch совпал с текущим ETag — ответ без тела.
+     */
+    @Transactional(readOnly = true)
+    public Listing list(User user, int limit, FileSortKey sortKey, Boolean descending, String cursor,
+                        String ifNoneMatch) {
+        long version = fileListVersions.current(user.getId());
+        Key key = new Key(user.getId(), limit, sortKey, descending, cursor);
+        String etag = etag(version, key);
+        if (matches(ifNoneMatch, etag)) {
+            return new Listing(etag, null, null);
+        }
+
+        Entry cached = enabled ? cache.getIfPresent(key) : null;
+        if (cached != null && cached.version() == version) {
+            return new Listing(etag, cached.body(), cached.nextCursor());
+        }
+
+        FileListPage page = fileStorageService.listFiles(user, limit, sortKey, descending, cursor);
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(page.getFiles());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize file list", e);
+        }
+        if (enabled) {
+            cache.put(key, new Entry(version, body, page.getNextCursor()));
+        }
+        return new Listing(etag, body, page.getNextCursor());
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Слабый ETag: одинаковое содержимое, но не обязательно те же байты.
+     * Параметры входят хешем, в том числе id пользователя — ETag не совпадёт у разных пользователей.
+     */
+    static String etag(long version, Key key) {
+        String params = key.userId() + "|" + key.limit() + "|" + key.sortKey() + "|"
+                + key.descending() + "|" + key.cursor();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(params.getBytes(StandardCharsets.UTF_8));
+            return "W/\"" + version + "-" + HexFormat.of().formatHex(hash, 0, 8) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Сравнение для If-None-Match: слабое, список через запятую или «*».
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * body == null — клиентская копия актуальна (304).
+     */
+    public record Listing(String etag, byte[] body, String nextCursor) {
+
+        public boolean notModified() {
+            return body == null;
+        }
+    }
+
+    record Key(Long userId, int limit, FileSortKey sortKey, Boolean descending, String cursor) {
+    }
+
+    private record Entry(long version, byte[] body, String nextCursor) {
+
+        int weight() {
+            return ENTRY_OVERHEAD + body.length + (nextCursor != null ? 2 * nextCursor.length() : 0);
+        }
+    }
+}
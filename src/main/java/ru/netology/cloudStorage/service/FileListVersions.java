@@ -0,0 +1,24 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.repository.UserRepository;
+
+/**
+ * Версия списка файлов пользователя: растёт при каждом сохранении, удалении и переименовании.
+ * Увеличивается в транзакции изменения, поэтому видна вместе с ним и откатывается вместе с ним.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileListVersions {
+
+    private final UserRepository userRepository;
+
+    public void bump(Long userId) {
+        userRepository.incrementListVersion(userId);
+    }
+
+    public long current(Long userId) {
+        return userRepository.findListVersion(userId).orElse(0L);
+    }
+}
@@ -0,0 +1,158 @@
+package ru.netology.cloudStorage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.StorageTier;
+import ru.netology.cloudStorage.entity.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Кэш метаданных файлов по (id пользователя, имя) перед findByUserAndFilename.
+ * Запись в кэш идёт после коммита транзакции, удаление — сразу и ещё раз после её завершения,
+ * поэтому параллельное чтение не вернёт в кэш строку, которую транзакция меняет.
+ * Размер ограничен оценкой занимаемой памяти, а не числом записей: длина имени и пути не фиксирована.
+ */
+@Component
+@Slf4j
+public class FileMetadataCache {
+
+    private static final int KEY_OVERHEAD = 48;
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final Cache<Key, Entry> cache;
+    private final boolean enabled;
+
+    public FileMetadataCache(StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        StorageProperties.FileCacheConfig config = storageProperties.getFileCache();
+
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxWeightBytes())
+                .weigher((Key key, Entry entry) -> key.weight() + entry.weight())
+                .expireAfterWrite(Duration.ofSeconds(config.getTtlSeconds()))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "fileMetadata");
+        log.info("File metadata cache {}: max {} bytes, ttl {}s", enabled ? "enabled" : "disabled",
+                config.getMaxWeightBytes(), config.getTtlSeconds());
+    }
+
+    /**
+     * Файл из кэша или из loader. Одновременные промахи по одному ключу делают один запрос.
+     * Каждый вызов возвращает новый экземпляр File, изменения вызывающего кэш не затрагивают.
+     */
+    public Optional<File> get(User user, String filename, Supplier<Optional<File>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Entry entry = cache.get(new Key(user.getId(), filename),
+                key -> loader.get().map(Entry::of).orElse(null));
+        return Optional.ofNullable(entry).map(cached -> cached.toFile(user));
+    }
+
+    /**
+     * Есть ли файл в кэше. Отсутствие в кэше ничего не говорит об отсутствии в БД.
+     */
+    public boolean contains(User user, String filename) {
+        return enabled && cache.getIfPresent(new Key(user.getId(), filename)) != null;
+    }
+
+    public void put(File file) {
+        put(file, file.getFilename());
+    }
+
+    /**
+     * Файл под новым именем после переименования UPDATE-ом мимо сущности. Сама сущность
+     * не меняется: иначе Hibernate при flush записал бы её строку целиком.
+     */
+    public void put(File file, String filename) {
+        if (!enabled) {
+            return;
+        }
+        Key key = new Key(file.getUser().getId(), filename);
+        Entry entry = Entry.of(file, filename);
+        afterTransaction(true, () -> cache.put(key, entry));
+    }
+
+    public void evict(Long userId, String filename) {
+        Key key = new Key(userId, filename);
+        cache.invalidate(key);
+        afterTransaction(false, () -> cache.invalidate(key));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static void afterTransaction(boolean commitOnly, Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (!commitOnly || status == STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+
+    private record Key(Long userId, String filename) {
+
+        int weight() {
+            return KEY_OVERHEAD + 2 * filename.length();
+        }
+    }
+
+    private record Entry(Long id, String filename, Long size, String filePath, LocalDateTime uploadDate,
+                         String blobDigest, String codec, Long storedSize, StorageTier tier) {
+
+        static Entry of(File file) {
+            return of(file, file.getFilename());
+        }
+
+        static Entry of(File file, String filename) {
+            return new Entry(file.getId(), filename, file.getSize(), file.getFilePath(),
+                    file.getUploadDate(), file.getBlobDigest(), file.getCodec(), file.getStoredSize(), file.getTier());
+        }
+
+        File toFile(User user) {
+            File file = new File(filename, size, filePath, user);
+            file.setId(id);
+            file.setUploadDate(uploadDate);
+            file.setBlobDigest(blobDigest);
+            file.setCodec(codec);
+            file.setStoredSize(storedSize);
+            file.setTier(tier);
+            return file;
+        }
+
+        int weight() {
+            int weight = ENTRY_OVERHEAD + 2 * (filename.length() + filePath.length());
+            if (blobDigest != null) {
+                weight += 2 * blobDigest.length();
+            }
+            return weight;
+        }
+    }
+}
@@ -1,21 +1,45 @@
 package ru.netology.cloudStorage.service;
 
 import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.repository.FileRepositoryCustom;
 import ru.netology.cloudStorage.config.StorageProperties;
 import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.StorageTier;
 import ru.netology.cloudStorage.entity.User;
 import ru.netology.cloudStorage.DTO.FileInfoResponse;
+import ru.netology.cloudStorage.DTO.FileListPage;
+import ru.netology.cloudStorage.util.ContentCodec;
+import ru.netology.cloudStorage.util.FileCursor;
+import ru.netology.cloudStorage.util.FileSortKey;
+import ru.netology.cloudStorage.util.SearchCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -24,9 +48,24 @@ import java.util.stream.Collectors;
 @Slf4j
 public class FileStorageService {
 
+    static final int MIN_SUBSTRING_QUERY = 3;
+
     private final FileRepository fileRepository;
     private final StorageProperties storageProperties;
+    private final BufferPool bufferPool;
+    private final BlobService blobService;
+    private final DiskIoLimiter diskIoLimiter;
+    private final StorageMetrics storageMetrics;
+    private final CompressionPolicy compressionPolicy;
+    private final StorageLayout storageLayout;
+    private final AccessTracker accessTracker;
+    private final FileMetadataCache fileMetadataCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QuotaService quotaService;
+    private final TransferThrottle transferThrottle;
+    private final FileListVersions fileListVersions;
     private Path rootLocation;
+    private Path fastLocation;
 
     @jakarta.annotation.PostConstruct
     public void init() {
@@ -34,6 +73,11 @@ public class FileStorageService {
             rootLocation = Paths.get(storageProperties.getPath()).toAbsolutePath().normalize();
             Files.createDirectories(rootLocation);
             log.info("File storage initialized at: {}", rootLocation);
+            if (storageProperties.getTiering().isEnabled()) {
+                fastLocation = Paths.get(storageProperties.getTiering().getFastPath()).toAbsolutePath().normalize();
+                Files.createDirectories(fastLocation);
+                log.info("Fast storage tier initialized at: {}", fastLocation);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Could not initialize storage", e);
         }
@@ -41,37 +85,239 @@ public class FileStorageService {
 
     @Transactional
     public void store(MultipartFile file, String filename, User user) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            storeStream(in, filename, user);
+        }
+    }
+
+    /**
+     * Потоковое сохранение: байты из входного потока пишутся сразу в итоговый файл хранилища
+     * через буфер из пула, без промежуточной копии. Текстовое содержимое при включённом
+     * сжатии сохраняется сжатым. Возвращает число принятых байт. Чтение обрывается
+     * QuotaExceededException, как только поток превысит оставшуюся квоту, и замедляется
+     * до лимита скорости пользователя.
+     */
+    @Transactional
+    public long storeStream(InputStream in, String filename, User user) throws IOException {
+        checkNewFile(filename, user);
+        in = transferThrottle.throttle(quotaService.limit(in, user), user.getLogin());
+
+        File fileEntity;
+        try (StorageMetrics.Transfer transfer = storageMetrics.startUpload(user.getLogin())) {
+            if (blobService.isEnabled()) {
+                fileEntity = storeBlob(in, filename, user);
+            } else {
+                String uniqueFilename = generateUniqueFilename(filename);
+                Path target = prepareTarget(uniqueFilename);
+                Written written = writeContent(in, target, null, filename);
+                deleteOnRollback(target);
+                fileEntity = new File(filename, written.size(), uniqueFilename, user);
+                if (written.codec() != null) {
+                    fileEntity.setCodec(written.codec().getEncoding());
+                    fileEntity.setStoredSize(written.storedSize());
+                    log.debug("File {} compressed with {}: {} -> {} bytes",
+                            filename, written.codec().getEncoding(), written.size(), written.storedSize());
+                }
+            }
+            transfer.complete(fileEntity.getSize());
+        }
+
+        fileRepository.save(fileEntity);
+        quotaService.charge(user, fileEntity.getSize());
+        fileListVersions.bump(user.getId());
+        fileMetadataCache.put(fileEntity);
+        eventPublisher.publishEvent(new UploadPipeline.FileStored(fileEntity.getId()));
+        log.info("File stored: {} ({} bytes) for user: {}", filename, fileEntity.getSize(), user.getLogin());
+        return fileEntity.getSize();
+    }
+
+    /**
+     * Создание файла по SHA-256 уже хранящегося содержимого, без передачи байт.
+     * Возвращает false, если такого blob-а нет и клиенту нужно загрузить файл целиком.
+     * Ссылаться можно только на содержимое, которое уже есть среди файлов пользователя:
+     * иначе хеш чужого файла служил бы пропуском к его байтам. Загрузки по-прежнему
+     * дедуплицируются между пользователями внутри commit.
+     */
+    @Transactional
+    public boolean storeFromBlob(String filename, String digest, long size, User user) {
         validateFilename(filename);
 
-        if (fileRepository.existsByUserAndFilename(user, filename)) {
+        if (!blobService.isEnabled()) {
+            return false;
+        }
+        if (exists(filename, user)) {
             throw new RuntimeException("File already exists: " + filename);
         }
 
-        String uniqueFilename = generateUniqueFilename(filename);
-        Path destinationFile = rootLocation.resolve(uniqueFilename);
-
-        Files.copy(file.getInputStream(), destinationFile);
+        String normalized = BlobService.normalizeDigest(digest);
+        if (!fileRepository.existsByUserAndBlobDigest(user, normalized)) {
+            return false;
+        }
+        Optional<String> blobPath = blobService.acquireExisting(normalized, size);
+        if (blobPath.isEmpty()) {
+            return false;
+        }
 
-        File fileEntity = new File(filename, file.getSize(), uniqueFilename, user);
+        File fileEntity = new File(filename, size, blobPath.get(), user);
+        fileEntity.setBlobDigest(normalized);
         fileRepository.save(fileEntity);
-        log.info("File stored: {} for user: {}", filename, user.getLogin());
+        quotaService.charge(user, fileEntity.getSize());
+        fileListVersions.bump(user.getId());
+        fileMetadataCache.put(fileEntity);
+        eventPublisher.publishEvent(new UploadPipeline.FileStored(fileEntity.getId()));
+        log.info("File linked to existing blob: {} -> {} for user: {}", filename, normalized, user.getLogin());
+        return true;
+    }
+
+    /**
+     * Создание файла из содержимого, уже собранного на диске (сессия загрузки по частям).
+     * Файл переносится в хранилище без копирования, проверки те же, что у store.
+     * Квота и строка файла записываются до переноса, а при откате транзакции содержимое
+     * возвращается в сессию: её можно зафиксировать повторно.
+     */
+    @Transactional
+    public File storeAssembled(Path assembled, String filename, User user) throws IOException {
+        checkNewFile(filename, user);
+        long size = Files.size(assembled);
+        quotaService.charge(user, size);
+
+        File fileEntity;
+        if (blobService.isEnabled()) {
+            String hash = hashContent(assembled);
+            // blob-у отдаётся жёсткая ссылка на данные сессии, сами они удаляются после коммита;
+            // строка файла ссылается на blobs по внешнему ключу, поэтому вставляется после commit
+            Path link = blobService.createTempFile();
+            diskIoLimiter.run(() -> linkOrCopy(assembled, link));
+            String blobPath;
+            try {
+                blobPath = blobService.commit(link, hash, size);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(link);
+                throw e;
+            }
+            fileEntity = new File(filename, size, blobPath, user);
+            fileEntity.setBlobDigest(hash);
+            fileRepository.saveAndFlush(fileEntity);
+            deleteAfterCommit(assembled);
+        } else {
+            String uniqueFilename = generateUniqueFilename(filename);
+            fileEntity = new File(filename, size, uniqueFilename, user);
+            // INSERT выполняется сразу: конфликт имени обнаруживается до переноса
+            fileRepository.saveAndFlush(fileEntity);
+            Path target = prepareTarget(uniqueFilename);
+            diskIoLimiter.run(() -> Files.move(assembled, target, StandardCopyOption.ATOMIC_MOVE));
+            moveBackOnRollback(target, assembled);
+        }
+
+        fileListVersions.bump(user.getId());
+        fileMetadataCache.put(fileEntity);
+        eventPublisher.publishEvent(new UploadPipeline.FileStored(fileEntity.getId()));
+        log.info("Assembled file stored: {} ({} bytes) for user: {}", filename, size, user.getLogin());
+        return fileEntity;
     }
 
+    /**
+     * Проверки перед созданием файла, общие для всех способов загрузки:
+     * имя допустимо и у пользователя ещё нет файла с таким именем.
+     */
+    public void checkNewFile(String filename, User user) {
+        validateFilename(filename);
+        if (exists(filename, user)) {
+            throw new RuntimeException("File already exists: " + filename);
+        }
+    }
+
+    /**
+     * Есть ли содержимое с таким SHA-256 среди файлов пользователя. Чужие blob-ы не видны:
+     * ответ о них раскрывал бы, что у кого-то хранится файл с известным содержимым.
+     */
     @Transactional(readOnly = true)
+    public boolean hasBlob(String digest, User user) {
+        return blobService.isEnabled()
+                && fileRepository.existsByUserAndBlobDigest(user, BlobService.normalizeDigest(digest));
+    }
+
     public Path load(String filename, User user) {
-        File file = fileRepository.findByUserAndFilename(user, filename)
+        return resolveForRead(getFile(filename, user));
+    }
+
+    /**
+     * Без собственной транзакции: при попадании в кэш соединение из пула не берётся,
+     * при промахе запрос идёт в транзакции репозитория.
+     */
+    public File getFile(String filename, User user) {
+        return fileMetadataCache.get(user, filename, () -> fileRepository.findByUserAndFilename(user, filename))
                 .orElseThrow(() -> new RuntimeException("File not found: " + filename));
-        return rootLocation.resolve(file.getFilePath());
+    }
+
+    /**
+     * Несколько файлов одним запросом с IN, в порядке имён; повторы имён отбрасываются.
+     */
+    @Transactional(readOnly = true)
+    public List<File> getFiles(Collection<String> filenames, User user) {
+        Map<String, File> found = new HashMap<>();
+        fileRepository.findByUserAndFilenameIn(user, filenames).forEach(file -> found.put(file.getFilename(), file));
+
+        List<File> files = new ArrayList<>(found.size());
+        for (String filename : new LinkedHashSet<>(filenames)) {
+            File file = found.get(filename);
+            if (file == null) {
+                throw new RuntimeException("File not found: " + filename);
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Повторное чтение строки мимо кэша, когда по закэшированному пути файла уже нет.
+     */
+    public File refreshFile(String filename, User user) {
+        fileMetadataCache.evict(user.getId(), filename);
+        return getFile(filename, user);
+    }
+
+    /**
+     * Путь для отдачи содержимого: чтение учитывается при выборе уровня хранения.
+     */
+    public Path resolveForRead(File file) {
+        accessTracker.record(file.getId());
+        return resolvePath(file);
+    }
+
+    public Path resolvePath(File file) {
+        if (file.getTier() == StorageTier.FAST && file.getBlobDigest() == null) {
+            return tierRoot(StorageTier.FAST).resolve(file.getFilePath());
+        }
+        Path path = rootLocation.resolve(file.getFilePath());
+        if (file.getBlobDigest() == null && StorageLayout.isFlat(file.getFilePath())
+                && storageLayout.isSharded() && !Files.exists(path)) {
+            // Мигратор мог перенести файл после того, как строка была прочитана
+            Path sharded = rootLocation.resolve(storageLayout.place(file.getFilePath()));
+            if (Files.exists(sharded)) {
+                return sharded;
+            }
+        }
+        return path;
     }
 
     @Transactional
     public void delete(String filename, User user) throws IOException {
-        File file = fileRepository.findByUserAndFilename(user, filename)
-                .orElseThrow(() -> new RuntimeException("File not found: " + filename));
+        File file = getFile(filename, user);
+        fileMetadataCache.evict(user.getId(), filename);
+        if (fileRepository.deleteOwned(file.getId(), user) == 0) {
+            throw new RuntimeException("File not found: " + filename);
+        }
+        quotaService.release(user.getId(), file.getSize(), 1);
+        fileListVersions.bump(user.getId());
+        eventPublisher.publishEvent(new UploadPipeline.FileDeleted(file.getId()));
 
-        Path filePath = rootLocation.resolve(file.getFilePath());
-        Files.deleteIfExists(filePath);
-        fileRepository.delete(file);
+        if (file.getBlobDigest() != null) {
+            blobService.release(file.getBlobDigest());
+        } else {
+            Path path = resolvePath(file);
+            diskIoLimiter.run(() -> Files.deleteIfExists(path));
+        }
 
         log.info("File deleted: {} for user: {}", filename, user.getLogin());
     }
@@ -80,28 +326,295 @@ public class FileStorageService {
     public void rename(String oldFilename, String newFilename, User user) {
         validateFilename(newFilename);
 
-        File file = fileRepository.findByUserAndFilename(user, oldFilename)
-                .orElseThrow(() -> new RuntimeException("File not found: " + oldFilename));
-
-        if (fileRepository.existsByUserAndFilename(user, newFilename)) {
+        File file = getFile(oldFilename, user);
+        if (exists(newFilename, user)) {
             throw new RuntimeException("File already exists: " + newFilename);
         }
 
-        file.setFilename(newFilename);
-        fileRepository.save(file);
+        fileMetadataCache.evict(user.getId(), oldFilename);
+        if (fileRepository.renameOwned(file.getId(), user, oldFilename, newFilename) == 0) {
+            throw new RuntimeException("File not found: " + oldFilename);
+        }
+        fileListVersions.bump(user.getId());
+        // При выключенном кэше file — управляемая сущность: изменение имени в ней
+        // записало бы при коммите всю строку поверх параллельных изменений
+        fileMetadataCache.put(file, newFilename);
 
         log.info("File renamed: {} -> {} for user: {}", oldFilename, newFilename, user.getLogin());
     }
 
     @Transactional(readOnly = true)
     public List<FileInfoResponse> listFiles(User user, int limit) {
-        return fileRepository.findAllByUserOrderByUploadDateDesc(user).stream()
-                .limit(limit)
-                .map(file -> new FileInfoResponse(file.getFilename(), file.getSize()))
+        return listFiles(user, limit, FileSortKey.DATE, null, null).getFiles();
+    }
+
+    /**
+     * Keyset-пагинация: в БД уходит seek-предикат по курсору и LIMIT,
+     * поэтому стоимость страницы не зависит от числа файлов пользователя.
+     */
+    @Transactional(readOnly = true)
+    public FileListPage listFiles(User user, int limit, FileSortKey sortKey, Boolean descending, String cursor) {
+        boolean desc = descending != null ? descending : sortKey.isDescendingByDefault();
+
+        FileCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            after = FileCursor.decode(cursor);
+            if (after.sortKey() != sortKey || after.descending() != desc) {
+                throw new IllegalArgumentException("Cursor does not match requested sort");
+            }
+        }
+
+        // Одна лишняя строка показывает, есть ли следующая страница
+        List<FileRepositoryCustom.FileRow> rows = fileRepository.findPage(user.getId(), sortKey, desc, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<FileRepositoryCustom.FileRow> page = hasMore ? rows.subList(0, limit) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            FileRepositoryCustom.FileRow last = page.get(page.size() - 1);
+            nextCursor = new FileCursor(sortKey, desc, cursorValue(sortKey, last), last.id()).encode();
+        }
+
+        List<FileInfoResponse> files = page.stream()
+                .map(row -> new FileInfoResponse(row.filename(), row.size()))
+                .collect(Collectors.toList());
+        return new FileListPage(files, nextCursor);
+    }
+
+    /**
+     * Поиск по имени с keyset-пагинацией. Подстроке нужно не меньше трёх символов:
+     * по более короткой строке триграммный индекс не отбирает строки.
+     */
+    @Transactional(readOnly = true)
+    public FileListPage searchFiles(User user, String query, boolean prefix, Boolean byRelevance,
+                                    int limit, String cursor) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is empty");
+        }
+        if (query.length() > 255) {
+            throw new IllegalArgumentException("Search query is too long");
+        }
+        if (!prefix && query.length() < MIN_SUBSTRING_QUERY) {
+            throw new IllegalArgumentException("Substring search needs at least " + MIN_SUBSTRING_QUERY + " characters");
+        }
+        // По умолчанию подстрока сортируется по сходству, префикс — по имени
+        boolean relevance = byRelevance != null ? byRelevance : !prefix;
+
+        SearchCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            after = SearchCursor.decode(cursor);
+            if (after.byRelevance() != relevance) {
+                throw new IllegalArgumentException("Cursor does not match requested sort");
+            }
+        }
+
+        List<FileRepositoryCustom.SearchRow> rows = fileRepository.search(
+                user.getId(), query, prefix, relevance, after, limit + 1);
+        boolean hasMore = rows.size() > limit;
+        List<FileRepositoryCustom.SearchRow> page = hasMore ? rows.subList(0, limit) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            FileRepositoryCustom.SearchRow last = page.get(page.size() - 1);
+            nextCursor = new SearchCursor(relevance, last.score(), last.filename()).encode();
+        }
+
+        List<FileInfoResponse> files = page.stream()
+                .map(row -> new FileInfoResponse(row.filename(), row.size()))
                 .collect(Collectors.toList());
+        return new FileListPage(files, nextCursor);
+    }
+
+    /**
+     * Файл, записанный в транзакции сохранения, удаляется при её откате (например, если
+     * квоту исчерпала параллельная загрузка): иначе на диске осталось бы содержимое без строки.
+     */
+    private void deleteOnRollback(Path path) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        log.warn("Could not delete content of rolled back upload {}: {}", path, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Откат возвращает перенесённое содержимое на прежнее место. Выполняется раньше
+     * остальных синхронизаций: сессия не должна стать доступной, пока её данных нет на месте.
+     */
+    private void moveBackOnRollback(Path target, Path source) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public int getOrder() {
+                return HIGHEST_PRECEDENCE;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        Files.move(target, source, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (IOException e) {
+                        log.warn("Could not return {} to {} after rollback: {}", target, source, e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    private void deleteAfterCommit(Path path) throws IOException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Files.deleteIfExists(path);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Could not delete {} after commit: {}", path, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Жёсткая ссылка, если файловая система их поддерживает, иначе копия.
+     */
+    private static void linkOrCopy(Path source, Path link) throws IOException {
+        try {
+            Files.createLink(link, source);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source, link, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
-    private void validateFilename(String filename) {
+    private File storeBlob(InputStream in, String filename, User user) throws IOException {
+        Path tempFile = blobService.createTempFile();
+        MessageDigest digest = BlobService.newDigest();
+        long size = writeContent(in, tempFile, digest, null).size();
+        String hash = HexFormat.of().formatHex(digest.digest());
+
+        String blobPath;
+        try {
+            blobPath = blobService.commit(tempFile, hash, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        File fileEntity = new File(filename, size, blobPath, user);
+        fileEntity.setBlobDigest(hash);
+        return fileEntity;
+    }
+
+    /**
+     * Копирование содержимого в файл. Если задано compressAs, кодек выбирается
+     * по этому имени и первому буферу данных; digest считается по исходным байтам.
+     */
+    private Written writeContent(InputStream in, Path destination, MessageDigest digest,
+                                 String compressAs) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try (FileChannel channel = FileChannel.open(destination,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            byte[] array = buffer.array();
+            int read = in.readNBytes(array, 0, array.length);
+            ContentCodec codec = compressAs == null ? null
+                    : compressionPolicy.choose(compressAs, array, read, read < array.length);
+            OutputStream encoder = codec == null ? null
+                    : codec.encoder(diskOutput(channel), compressionPolicy.getLevel());
+
+            long total = 0;
+            for (; read > 0; read = in.read(array, 0, array.length)) {
+                if (digest != null) {
+                    digest.update(array, 0, read);
+                }
+                if (encoder != null) {
+                    encoder.write(array, 0, read);
+                } else {
+                    buffer.clear().limit(read);
+                    // Разрешение берётся на запись чанка: чтение из сокета идёт без него
+                    diskIoLimiter.run(() -> {
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    });
+                }
+                total += read;
+            }
+            if (encoder != null) {
+                encoder.close();
+            }
+            return new Written(total, channel.size(), codec);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(destination);
+            throw e;
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Поток записи в канал для кодека: каждая запись идёт под разрешением на дисковую операцию.
+     */
+    private OutputStream diskOutput(FileChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer chunk = ByteBuffer.wrap(b, off, len);
+                diskIoLimiter.run(() -> {
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                });
+            }
+        };
+    }
+
+    private String hashContent(Path path) throws IOException {
+        MessageDigest digest = BlobService.newDigest();
+        ByteBuffer buffer = bufferPool.acquire();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (diskIoLimiter.call(() -> channel.read(buffer.clear())) >= 0) {
+                digest.update(buffer.array(), 0, buffer.position());
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String cursorValue(FileSortKey sortKey, FileRepositoryCustom.FileRow row) {
+        return switch (sortKey) {
+            case DATE -> row.uploadDate().toString();
+            case SIZE -> String.valueOf(row.size());
+            case NAME -> row.filename();
+        };
+    }
+
+    private boolean exists(String filename, User user) {
+        return fileMetadataCache.contains(user, filename) || fileRepository.existsByUserAndFilename(user, filename);
+    }
+
+    void validateFilename(String filename) {
         if (filename == null || filename.isBlank()) {
             throw new RuntimeException("Filename cannot be empty");
         }
@@ -110,12 +623,38 @@ public class FileStorageService {
         }
     }
 
+    /**
+     * Путь файла относительно корня: UUID с расширением исходного имени, разложенный по подкаталогам.
+     */
     private String generateUniqueFilename(String originalFilename) {
         String extension = "";
         int dotIndex = originalFilename.lastIndexOf('.');
         if (dotIndex > 0) {
             extension = originalFilename.substring(dotIndex);
         }
-        return UUID.randomUUID() + extension;
+        return storageLayout.place(UUID.randomUUID() + extension);
+    }
+
+    /**
+     * Корень уровня хранения. Если быстрый уровень выключен, файлы, оставшиеся на нём,
+     * продолжают читаться по последнему настроенному пути.
+     */
+    public Path tierRoot(StorageTier tier) {
+        if (tier == StorageTier.FAST) {
+            return fastLocation != null ? fastLocation
+                    : Paths.get(storageProperties.getTiering().getFastPath()).toAbsolutePath().normalize();
+        }
+        return rootLocation;
+    }
+
+    private Path prepareTarget(String relativePath) throws IOException {
+        Path target = rootLocation.resolve(relativePath);
+        if (!target.getParent().equals(rootLocation)) {
+            Files.createDirectories(target.getParent());
+        }
+        return target;
+    }
+
+    private record Written(long size, long storedSize, ContentCodec codec) {
     }
-}
\ No newline at end of file
+}
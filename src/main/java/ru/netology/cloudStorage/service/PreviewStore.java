@@ -0,0 +1,88 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Миниатюры на диске: {previewPath}/{две hex-цифры id}/{id}-{размер}.jpg.
+ * Привязаны к id файла, поэтому переименование их не затрагивает.
+ */
+@Component
+@Slf4j
+public class PreviewStore {
+
+    public static final String CONTENT_TYPE = "image/jpeg";
+    private static final String FORMAT = "jpg";
+
+    private final Path root;
+    private final List<Integer> sizes;
+
+    public PreviewStore(StorageProperties storageProperties) {
+        StorageProperties.ProcessingConfig config = storageProperties.getProcessing();
+        this.root = Paths.get(config.getPreviewPath()).toAbsolutePath().normalize();
+        this.sizes = config.getThumbnailSizes().stream().sorted().distinct().toList();
+    }
+
+    public List<Integer> getSizes() {
+        return sizes;
+    }
+
+    /**
+     * Миниатюра наименьшего размера, не меньшего запрошенного, иначе наибольшая.
+     */
+    public Optional<Path> find(Long fileId, int requestedSize) {
+        Path fallback = null;
+        for (int size : sizes) {
+            Path path = path(fileId, size);
+            if (Files.isReadable(path)) {
+                if (size >= requestedSize) {
+                    return Optional.of(path);
+                }
+                fallback = path;
+            }
+        }
+        return Optional.ofNullable(fallback);
+    }
+
+    /**
+     * Запись через временный файл: читатель не увидит недописанную миниатюру.
+     */
+    public void write(Long fileId, int size, BufferedImage image) throws IOException {
+        Path target = path(fileId, size);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            if (!ImageIO.write(image, FORMAT, temp.toFile())) {
+                throw new IOException("No image writer for " + FORMAT);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public void delete(Long fileId) {
+        for (int size : sizes) {
+            try {
+                Files.deleteIfExists(path(fileId, size));
+            } catch (IOException e) {
+                log.warn("Could not delete preview {} of file {}: {}", size, fileId, e.getMessage());
+            }
+        }
+    }
+
+    Path path(Long fileId, int size) {
+        return root.resolve(String.format("%02x", fileId & 0xff)).resolve(fileId + "-" + size + "." + FORMAT);
+    }
+}
@@ -0,0 +1,46 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Этап фоновой обработки загруженного файла. Этапы — бины, выполняются по порядку @Order;
+ * результаты предыдущих доступны следующим через Context. Ошибка этапа не останавливает остальные.
+ */
+public interface ProcessingStage {
+
+    String name();
+
+    void process(Context context) throws IOException;
+
+    @Getter
+    class Context {
+
+        private final File file;
+        private final Path path;
+        @Setter
+        private String checksum;
+        @Setter
+        private String contentType;
+
+        public Context(File file, Path path) {
+            this.file = file;
+            this.path = path;
+        }
+
+        /**
+         * Исходное содержимое: сжатый при хранении файл распаковывается.
+         */
+        public InputStream open() throws IOException {
+            InputStream in = Files.newInputStream(path);
+            return file.getCodec() != null ? ContentCodec.fromEncoding(file.getCodec()).decoder(in) : in;
+        }
+    }
+}
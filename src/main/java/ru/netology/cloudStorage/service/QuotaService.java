@@ -0,0 +1,157 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.netology.cloudStorage.DTO.UsageResponse;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.entity.UserUsage;
+import ru.netology.cloudStorage.exception.QuotaExceededException;
+import ru.netology.cloudStorage.repository.UserRepository;
+import ru.netology.cloudStorage.repository.UserUsageRepository;
+import ru.netology.cloudStorage.util.LimitedInputStream;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Учёт занятого места по счётчикам user_usage. Загрузка прибавляет размер файла условным
+ * UPDATE в своей транзакции (не больше квоты), удаление вычитает — без SUM по files.
+ * Расхождения, если они появятся, исправляет периодический пересчёт пачками.
+ */
+@Service
+@Slf4j
+public class QuotaService {
+
+    private final UserUsageRepository usageRepository;
+    private final UserRepository userRepository;
+    private final TransactionOperations transactionOperations;
+    private final StorageProperties.QuotaConfig config;
+    private final Counter corrected;
+
+    public QuotaService(UserUsageRepository usageRepository, UserRepository userRepository,
+                        TransactionOperations transactionOperations, StorageProperties storageProperties,
+                        MeterRegistry meterRegistry) {
+        this.usageRepository = usageRepository;
+        this.userRepository = userRepository;
+        this.transactionOperations = transactionOperations;
+        this.config = storageProperties.getQuota();
+        this.corrected = Counter.builder("storage.quota.reconciled")
+                .description("Usage counters corrected by reconciliation")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Сколько байт пользователь ещё может загрузить; Long.MAX_VALUE при выключенной квоте.
+     */
+    @Transactional(readOnly = true)
+    public long remaining(User user) {
+        if (!config.isEnabled()) {
+            return Long.MAX_VALUE;
+        }
+        return usageRepository.findById(user.getId())
+                .map(usage -> Math.max(0, limit(usage) - usage.getUsedBytes()))
+                .orElse(config.getDefaultBytes());
+    }
+
+    public void checkAvailable(User user, long bytes) {
+        long remaining = remaining(user);
+        if (bytes > remaining) {
+            throw exceeded(user, remaining);
+        }
+    }
+
+    /**
+     * Поток загрузки, обрывающийся на первом байте сверх оставшейся квоты.
+     * Окончательная проверка всё равно делается в charge, под блокировкой строки.
+     */
+    public InputStream limit(InputStream in, User user) {
+        if (!config.isEnabled()) {
+            return in;
+        }
+        long remaining = remaining(user);
+        return new LimitedInputStream(in, remaining, () -> exceeded(user, remaining));
+    }
+
+    /**
+     * Учёт нового файла в транзакции его сохранения: при превышении квоты транзакция откатывается.
+     */
+    @Transactional
+    public void charge(User user, long bytes) {
+        usageRepository.ensure(user.getId());
+        if (!config.isEnabled()) {
+            usageRepository.add(user.getId(), bytes, 1);
+        } else if (usageRepository.charge(user.getId(), bytes, 1, config.getDefaultBytes()) == 0) {
+            throw exceeded(user, remaining(user));
+        }
+    }
+
+    @Transactional
+    public void release(Long userId, long bytes, long files) {
+        if (files > 0) {
+            usageRepository.add(userId, -bytes, -files);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UsageResponse usage(User user) {
+        UserUsage usage = usageRepository.findById(user.getId()).orElseGet(UserUsage::new);
+        if (!config.isEnabled()) {
+            return new UsageResponse(usage.getUsedBytes(), usage.getFileCount(), null, null);
+        }
+        long limit = limit(usage);
+        return new UsageResponse(usage.getUsedBytes(), usage.getFileCount(), limit,
+                Math.max(0, limit - usage.getUsedBytes()));
+    }
+
+    /**
+     * Пересчёт счётчиков по files. Пользователи обходятся пачками по id, каждая пачка —
+     * отдельная транзакция: строки пачки блокируются, затем пересчитываются одним INSERT ... SELECT.
+     */
+    @Scheduled(initialDelayString = "${cloud.storage.quota.reconcile-initial-delay-ms:120000}",
+            fixedDelayString = "${cloud.storage.quota.reconcile-interval-ms:3600000}")
+    public long reconcile() {
+        int chunkSize = config.getReconcileChunkSize();
+        long total = 0;
+        Long after = 0L;
+        List<Long> ids;
+        do {
+            ids = userRepository.findIdsAfter(after, Limit.of(chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> chunk = ids;
+            Integer updated = transactionOperations.execute(status -> {
+                usageRepository.lockAll(chunk);
+                return usageRepository.reconcile(chunk);
+            });
+            total += updated == null ? 0 : updated;
+            after = ids.get(ids.size() - 1);
+        } while (ids.size() == chunkSize);
+
+        corrected.increment(total);
+        if (total > 0) {
+            log.warn("Quota reconciliation corrected usage of {} users", total);
+        }
+        return total;
+    }
+
+    private long limit(UserUsage usage) {
+        return usage.getQuotaBytes() != null ? usage.getQuotaBytes() : config.getDefaultBytes();
+    }
+
+    private QuotaExceededException exceeded(User user, long remaining) {
+        return new QuotaExceededException("Storage quota exceeded for user " + user.getLogin()
+                + ": " + remaining + " bytes available");
+    }
+}
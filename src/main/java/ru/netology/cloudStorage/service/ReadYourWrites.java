@@ -0,0 +1,85 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Окно чтения собственных записей: после коммита пишущей транзакции пользователя
+ * его чтения в течение read-your-writes-ms идут в основную БД, а не на реплику,
+ * которая могла ещё не получить изменения. Слушатель регистрируется Spring Boot
+ * на менеджере транзакций автоматически. Отметки хранятся в памяти экземпляра.
+ */
+@Component
+@Slf4j
+public class ReadYourWrites implements TransactionExecutionListener {
+
+    private final StorageProperties.ReplicaConfig config;
+    private final LongSupplier clock;
+    private final Map<Long, Long> lastWrite = new ConcurrentHashMap<>();
+
+    public ReadYourWrites(StorageProperties storageProperties) {
+        this(storageProperties, System::nanoTime);
+    }
+
+    ReadYourWrites(StorageProperties storageProperties, LongSupplier clock) {
+        this.config = storageProperties.getReplica();
+        this.clock = clock;
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (config.isEnabled() && commitFailure == null && !transaction.isReadOnly()) {
+            currentUserId().ifPresent(this::markWrite);
+        }
+    }
+
+    public void markWrite(Long userId) {
+        lastWrite.put(userId, clock.getAsLong());
+    }
+
+    /**
+     * Была ли у текущего пользователя запись в пределах окна. Без пользователя — нет.
+     */
+    public boolean isRecent() {
+        return config.isEnabled() && currentUserId().map(this::isRecent).orElse(false);
+    }
+
+    public boolean isRecent(Long userId) {
+        Long at = lastWrite.get(userId);
+        return at != null && clock.getAsLong() - at < windowNanos();
+    }
+
+    @Scheduled(fixedDelayString = "${cloud.storage.replica.health-check-interval-ms:5000}")
+    public void evictExpired() {
+        long now = clock.getAsLong();
+        lastWrite.values().removeIf(at -> now - at >= windowNanos());
+    }
+
+    int size() {
+        return lastWrite.size();
+    }
+
+    private long windowNanos() {
+        return config.getReadYourWritesMs() * 1_000_000;
+    }
+
+    private static Optional<Long> currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return Optional.ofNullable(user.getId());
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,50 @@
+package ru.netology.cloudStorage.service;
+
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.util.Locale;
+
+/**
+ * Раскладка файлов хранилища по подкаталогам: ab/cd/&lt;uuid&gt; из первых символов имени.
+ * Путь хранится в File.filePath относительно корня, поэтому смена раскладки
+ * не затрагивает уже сохранённые файлы.
+ */
+@Component
+public class StorageLayout {
+
+    private final int levels;
+    private final int charsPerLevel;
+
+    public StorageLayout(StorageProperties storageProperties) {
+        StorageProperties.LayoutConfig config = storageProperties.getLayout();
+        this.levels = config.getFanOutLevels();
+        this.charsPerLevel = config.getCharsPerLevel();
+    }
+
+    public boolean isSharded() {
+        return levels > 0;
+    }
+
+    /**
+     * Относительный путь для сохранённого имени. Без раскладки — само имя.
+     */
+    public String place(String storedName) {
+        String key = storedName.replace("-", "").toLowerCase(Locale.ROOT);
+        if (levels <= 0 || key.length() < levels * charsPerLevel) {
+            return storedName;
+        }
+        StringBuilder path = new StringBuilder();
+        for (int level = 0; level < levels; level++) {
+            path.append(key, level * charsPerLevel, (level + 1) * charsPerLevel).append('/');
+        }
+        return path.append(storedName).toString();
+    }
+
+    /**
+     * Файл лежит прямо в корне: так сохранялись файлы до появления раскладки.
+     */
+    public static boolean isFlat(String filePath) {
+        return filePath.indexOf('/') < 0;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Перенос файлов из корня хранилища в раскладку по подкаталогам без остановки сервиса.
+ * Файл сначала переносится, затем условно обновляется filePath; при сбое между шагами
+ * resolvePath найдёт файл на новом месте, а следующий запуск допишет путь.
+ * Прогресс — это сами строки files, поэтому миграция продолжается с места остановки.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StorageLayoutMigrator {
+
+    private final FileRepository fileRepository;
+    private final StorageLayout storageLayout;
+    private final StorageProperties storageProperties;
+    private final DiskIoLimiter diskIoLimiter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (storageProperties.getLayout().isMigrateOnStartup() && storageLayout.isSharded()) {
+            Thread.ofVirtual().name("storage-layout-migrator").start(this::migrate);
+        }
+    }
+
+    /**
+     * Возвращает число перенесённых файлов; повторный параллельный запуск ничего не делает.
+     */
+    public long migrate() {
+        if (!storageLayout.isSharded() || !running.compareAndSet(false, true)) {
+            return 0;
+        }
+        StorageProperties.LayoutConfig config = storageProperties.getLayout();
+        Path root = Paths.get(storageProperties.getPath()).toAbsolutePath().normalize();
+        long migrated = 0;
+        long afterId = 0;
+
+        log.info("Storage layout migration started");
+        try (ExecutorService executor = Executors.newFixedThreadPool(
+                config.getMigrationParallelism(), Thread.ofVirtual().name("layout-move-", 0).factory())) {
+            List<File> batch;
+            do {
+                batch = fileRepository.findFlatAfter(afterId, Limit.of(config.getMigrationBatchSize()));
+                List<Future<Boolean>> moves = new ArrayList<>(batch.size());
+                for (File file : batch) {
+                    moves.add(executor.submit(() -> migrateFile(root, file.getId(), file.getFilePath())));
+                }
+                for (Future<Boolean> move : moves) {
+                    if (move.get()) {
+                        migrated++;
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).getId();
+                    log.info("Storage layout migration: {} files moved, last id {}", migrated, afterId);
+                }
+            } while (!batch.isEmpty());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Storage layout migration interrupted after {} files", migrated);
+        } catch (ExecutionException e) {
+            log.error("Storage layout migration stopped after {} files: {}", migrated, e.getCause().getMessage());
+        } finally {
+            running.set(false);
+        }
+        log.info("Storage layout migration finished: {} files moved", migrated);
+        return migrated;
+    }
+
+    boolean migrateFile(Path root, Long id, String oldPath) throws IOException {
+        String newPath = storageLayout.place(oldPath);
+        Path source = root.resolve(oldPath);
+        Path target = root.resolve(newPath);
+
+        boolean moved = diskIoLimiter.call(() -> {
+            if (Files.exists(source)) {
+                Files.createDirectories(target.getParent());
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            }
+            // Перенесён прошлым запуском, но путь в БД не обновлён
+            return Files.exists(target);
+        });
+        if (!moved) {
+            log.warn("File {} for id {} is missing on disk, path left as is", oldPath, id);
+            return false;
+        }
+
+        if (fileRepository.updateFilePath(id, oldPath, newPath) == 0 && !fileRepository.existsById(id)) {
+            // Файл удалили, пока он переносился: удаление не нашло его по старому пути
+            diskIoLimiter.run(() -> Files.deleteIfExists(target));
+            log.info("File id {} was deleted during migration, removed {}", id, newPath);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Метрики передачи файлов и проверки токенов.
+ * Тег user ставится, только если он включён в настройках: у каждого пользователя свои серии.
+ */
+@Component
+public class StorageMetrics {
+
+    /**
+     * Атрибут запроса с логином аутентифицированного пользователя,
+     * по нему метрики HTTP и скачиваний получают тег user.
+     */
+    public static final String USER_ATTRIBUTE = StorageMetrics.class.getName() + ".user";
+
+    public static final String UPLOAD = "upload";
+    public static final String DOWNLOAD = "download";
+    private static final String UNKNOWN_USER = "unknown";
+
+    private final MeterRegistry registry;
+    private final boolean userTag;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+
+    public StorageMetrics(MeterRegistry registry, StorageProperties storageProperties) {
+        this.registry = registry;
+        this.userTag = storageProperties.getMetrics().isUserTag();
+        Gauge.builder("storage.transfers.active", activeUploads, AtomicInteger::get)
+                .description("Transfers currently in progress")
+                .tag("direction", UPLOAD)
+                .register(registry);
+        Gauge.builder("storage.transfers.active", activeDownloads, AtomicInteger::get)
+                .description("Transfers currently in progress")
+                .tag("direction", DOWNLOAD)
+                .register(registry);
+    }
+
+    public boolean isUserTagEnabled() {
+        return userTag;
+    }
+
+    public Transfer startUpload(String user) {
+        return new Transfer(UPLOAD, user, activeUploads);
+    }
+
+    public Transfer startDownload(String user) {
+        return new Transfer(DOWNLOAD, user, activeDownloads);
+    }
+
+    /**
+     * Время проверки токена с исходом: cache_hit, cache_miss, invalid или error.
+     */
+    public void recordTokenValidation(String outcome, long nanos) {
+        Timer.builder("auth.token.validation")
+                .description("Token validation latency")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    String userValue(String user) {
+        return userTag && user != null ? user : UNKNOWN_USER;
+    }
+
+    /**
+     * Одна передача: счётчик активных растёт при создании и уменьшается при close().
+     */
+    public class Transfer implements AutoCloseable {
+
+        private final String direction;
+        private final String user;
+        private final AtomicInteger active;
+        private final long startNanos = System.nanoTime();
+        private boolean closed;
+
+        private Transfer(String direction, String user, AtomicInteger active) {
+            this.direction = direction;
+            this.user = userValue(user);
+            this.active = active;
+            active.incrementAndGet();
+        }
+
+        /**
+         * Учитывает переданные байты и скорость передачи.
+         */
+        public void complete(long bytes) {
+            long nanos = System.nanoTime() - startNanos;
+            handOff(bytes);
+            Timer.builder("storage.transfer.duration")
+                    .description("Time spent moving file content")
+                    .tag("direction", direction)
+                    .tag("user", user)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            if (nanos > 0 && bytes > 0) {
+                DistributionSummary.builder("storage.transfer.throughput")
+                        .description("Transfer throughput")
+                        .baseUnit("bytes_per_second")
+                        .tag("direction", direction)
+                        .register(registry)
+                        .record(bytes * 1_000_000_000d / nanos);
+            }
+        }
+
+        /**
+         * Учитывает байты, которые отправит контейнер (sendfile): скорость здесь не измерить.
+         */
+        public void handOff(long bytes) {
+            Counter.builder("storage.transfer.bytes")
+                    .description("File content bytes transferred")
+                    .baseUnit("bytes")
+                    .tag("direction", direction)
+                    .tag("user", user)
+                    .register(registry)
+                    .increment(bytes);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                active.decrementAndGet();
+            }
+        }
+    }
+}
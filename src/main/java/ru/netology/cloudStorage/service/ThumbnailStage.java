@@ -0,0 +1,102 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Миниатюры изображений через ImageIO для каждого размера из thumbnail-sizes (по длинной стороне).
+ * Размеры проверяются по заголовку до декодирования, а большие изображения читаются
+ * с прореживанием: в памяти не оказывается полноразмерная картинка.
+ */
+@Component
+@Order(30)
+@Slf4j
+public class ThumbnailStage implements ProcessingStage {
+
+    private final PreviewStore previewStore;
+    private final StorageProperties.ProcessingConfig config;
+
+    public ThumbnailStage(PreviewStore previewStore, StorageProperties storageProperties) {
+        this.previewStore = previewStore;
+        this.config = storageProperties.getProcessing();
+    }
+
+    @Override
+    public String name() {
+        return "thumbnail";
+    }
+
+    @Override
+    public void process(Context context) throws IOException {
+        String type = context.getContentType();
+        Long size = context.getFile().getSize();
+        List<Integer> sizes = previewStore.getSizes();
+        // Сжимаются при хранении только текстовые форматы, изображение читается с диска как есть
+        if (type == null || !type.startsWith("image/") || context.getFile().getCodec() != null
+                || sizes.isEmpty() || (size != null && size > config.getMaxImageBytes())) {
+            return;
+        }
+
+        BufferedImage source;
+        try (ImageInputStream in = new FileImageInputStream(context.getPath().toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > config.getMaxImagePixels()) {
+                    log.debug("Image {} is too large for thumbnails: {}x{}", context.getFile().getId(), width, height);
+                    return;
+                }
+                // Прореживание оставляет не меньше двух пикселей на пиксель наибольшей миниатюры
+                int step = Math.max(1, Math.max(width, height) / (2 * sizes.get(sizes.size() - 1)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        for (int target : sizes) {
+            previewStore.write(context.getFile().getId(), target, scale(source, target));
+        }
+    }
+
+    static BufferedImage scale(BufferedImage source, int maxSide) {
+        double ratio = Math.min(1.0, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        // JPEG без альфа-канала: прозрачность заливается белым
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,187 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.StorageTier;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Перенос файлов между уровнями хранения по частоте чтений: давно не читавшиеся
+ * уходят с быстрого диска, самые читаемые занимают освободившееся место.
+ * Файл копируется с ограничением скорости, затем условно обновляется строка;
+ * если файл за это время удалили или изменили, копия удаляется.
+ * Файлы из хранилища дедупликации не переносятся: блоб общий для нескольких строк.
+ */
+@Service
+@ConditionalOnProperty(name = "cloud.storage.tiering.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class TierMover {
+
+    static final String PROMOTE = "promote";
+    static final String DEMOTE = "demote";
+    private static final String MOVING_SUFFIX = ".moving";
+
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final StorageLayout storageLayout;
+    private final StorageProperties storageProperties;
+    private final BufferPool bufferPool;
+    private final DiskIoLimiter diskIoLimiter;
+    private final FileMetadataCache fileMetadataCache;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(initialDelayString = "${cloud.storage.tiering.move-interval-ms:600000}",
+            fixedDelayString = "${cloud.storage.tiering.move-interval-ms:600000}")
+    public void rebalance() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int demoted = demote();
+            int promoted = promote();
+            fileRepository.decayAccessCounts();
+            if (demoted + promoted > 0) {
+                log.info("Storage tiering: {} files promoted, {} demoted", promoted, demoted);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    int demote() {
+        StorageProperties.TieringConfig config = storageProperties.getTiering();
+        LocalDateTime before = LocalDateTime.now().minusHours(config.getDemoteAfterHours());
+        int demoted = 0;
+        for (File file : fileRepository.findCold(StorageTier.FAST, before, Limit.of(config.getBatchSize()))) {
+            if (move(file, StorageTier.CAPACITY)) {
+                demoted++;
+            }
+        }
+        return demoted;
+    }
+
+    int promote() {
+        StorageProperties.TieringConfig config = storageProperties.getTiering();
+        long used = fileRepository.sumStoredSize(StorageTier.FAST);
+        int promoted = 0;
+        for (File file : fileRepository.findHot(StorageTier.CAPACITY, config.getPromoteAccessCount(),
+                Limit.of(config.getBatchSize()))) {
+            long size = file.getStoredSize() != null ? file.getStoredSize() : file.getSize();
+            if (used + size > config.getFastMaxBytes()) {
+                continue;
+            }
+            if (move(file, StorageTier.FAST)) {
+                used += size;
+                promoted++;
+            }
+        }
+        return promoted;
+    }
+
+    boolean move(File file, StorageTier to) {
+        String oldPath = file.getFilePath();
+        // На быстрый уровень файл попадает уже в раскладке по подкаталогам
+        String newPath = StorageLayout.isFlat(oldPath) && storageLayout.isSharded()
+                ? storageLayout.place(oldPath) : oldPath;
+        Path source = fileStorageService.resolvePath(file);
+        Path target = fileStorageService.tierRoot(to).resolve(newPath);
+        Path temp = target.resolveSibling(target.getFileName() + MOVING_SUFFIX);
+
+        try {
+            if (!Files.exists(source)) {
+                log.warn("File {} for id {} is missing on disk, tier left as is", oldPath, file.getId());
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+            copyThrottled(source, temp);
+            diskIoLimiter.run(() -> Files.move(temp, target,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING));
+
+            if (fileRepository.moveTier(file.getId(), file.getTier(), oldPath, to, newPath) == 0) {
+                // Файл удалили или перенесли, пока шло копирование
+                diskIoLimiter.run(() -> Files.deleteIfExists(target));
+                return false;
+            }
+            fileMetadataCache.evict(file.getUser().getId(), file.getFilename());
+            diskIoLimiter.run(() -> Files.deleteIfExists(source));
+        } catch (IOException e) {
+            log.warn("Could not move file id {} to {} tier: {}", file.getId(), to, e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // временный файл удалится следующим переносом
+            }
+            return false;
+        }
+
+        meterRegistry.counter("storage.tier.moves", "direction",
+                to == StorageTier.FAST ? PROMOTE : DEMOTE).increment();
+        log.debug("File id {} moved to {} tier", file.getId(), to);
+        return true;
+    }
+
+    /**
+     * Копирование буферами из пула со сбросом на диск. Скорость ограничивается паузами
+     * между буферами, разрешение на диск берётся только на время одного буфера.
+     */
+    private void copyThrottled(Path source, Path target) throws IOException {
+        long maxBytesPerSecond = storageProperties.getTiering().getMaxBytesPerSecond();
+        ByteBuffer buffer = bufferPool.acquire();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long started = System.nanoTime();
+            long copied = 0;
+            while (true) {
+                int read = diskIoLimiter.call(() -> {
+                    buffer.clear();
+                    int n = in.read(buffer);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    return n;
+                });
+                if (read < 0) {
+                    break;
+                }
+                copied += read;
+                if (maxBytesPerSecond > 0) {
+                    long due = (long) (copied * 1e9 / maxBytesPerSecond);
+                    long ahead = due - (System.nanoTime() - started);
+                    if (ahead > 0) {
+                        TimeUnit.NANOSECONDS.sleep(ahead);
+                    }
+                }
+            }
+            diskIoLimiter.run(() -> out.force(false));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Tier move interrupted");
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+}
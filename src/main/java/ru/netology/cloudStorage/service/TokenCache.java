@@ -0,0 +1,119 @@
+package ru.netology.cloudStorage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш проверенных токенов перед TokenService.validateToken.
+ * Время жизни записи ограничено и настройкой, и сроком действия самого токена.
+ */
+@Component
+@Slf4j
+public class TokenCache {
+
+    private final Cache<String, CachedToken> cache;
+    private final boolean enabled;
+    private final LongAdder invalidations = new LongAdder();
+
+    public TokenCache(StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        StorageProperties.CacheConfig config = storageProperties.getToken().getCache();
+        Duration maxTtl = Duration.ofSeconds(config.getTtlSeconds());
+
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfter(new Expiry<String, CachedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedToken value, long currentTime) {
+                        Duration untilExpiry = Duration.between(LocalDateTime.now(), value.expiresAt());
+                        Duration ttl = untilExpiry.compareTo(maxTtl) < 0 ? untilExpiry : maxTtl;
+                        return Math.max(0, ttl.toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedToken value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedToken value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "authTokens");
+        log.info("Token cache {}: max size {}, ttl {}s", enabled ? "enabled" : "disabled",
+                config.getMaxSize(), config.getTtlSeconds());
+    }
+
+    public Optional<User> get(String token) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedToken cached = cache.getIfPresent(token);
+        if (cached == null || cached.expiresAt().isBefore(LocalDateTime.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(cached.user());
+    }
+
+    public void put(String token, User user, LocalDateTime expiresAt) {
+        if (enabled) {
+            cache.put(token, new CachedToken(user, expiresAt));
+        }
+    }
+
+    public void evict(String token) {
+        if (cache.asMap().remove(token) != null) {
+            invalidations.increment();
+        }
+    }
+
+    public void evictUser(Long userId) {
+        cache.asMap().entrySet().removeIf(entry -> {
+            boolean matches = userId.equals(entry.getValue().user().getId());
+            if (matches) {
+                invalidations.increment();
+            }
+            return matches;
+        });
+    }
+
+    public void evictExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        cache.asMap().values().removeIf(cached -> cached.expiresAt().isBefore(now));
+        cache.cleanUp();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long invalidationCount() {
+        return invalidations.sum();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private record CachedToken(User user, LocalDateTime expiresAt) {
+    }
+}
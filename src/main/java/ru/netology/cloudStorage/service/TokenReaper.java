@@ -0,0 +1,109 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.AuthTokenRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Очистка токенов по расписанию: просроченные и превышающие maxTokensPerUser.
+ * Удаление идёт пачками, каждая в своей транзакции, поэтому блокировки auth_tokens
+ * держатся только на время одной пачки.
+ */
+@Service
+@ConditionalOnProperty(name = "cloud.storage.token.reaper.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class TokenReaper {
+
+    static final String EXPIRED = "expired";
+    static final String EXCESS = "excess";
+
+    private final AuthTokenRepository tokenRepository;
+    private final TokenCache tokenCache;
+    private final StorageProperties storageProperties;
+    private final MeterRegistry meterRegistry;
+
+    @Scheduled(initialDelayString = "${cloud.storage.token.reaper.initial-delay-ms:60000}",
+            fixedDelayString = "${cloud.storage.token.reaper.interval-ms:3600000}")
+    public void reap() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        long expired = deleteExpired();
+        long excess = trimExcess();
+        tokenCache.evictExpired();
+
+        sample.stop(meterRegistry.timer("auth.token.reaper.duration"));
+        record(EXPIRED, expired);
+        record(EXCESS, excess);
+
+        if (expired + excess > 0) {
+            log.info("Token reaper: deleted {} expired and {} excessive tokens", expired, excess);
+        }
+    }
+
+    long deleteExpired() {
+        int chunkSize = config().getChunkSize();
+        LocalDateTime now = LocalDateTime.now();
+        long total = 0;
+        int deleted;
+        do {
+            deleted = tokenRepository.deleteExpiredChunk(now, chunkSize);
+            total += deleted;
+        } while (deleted == chunkSize && pause());
+        return total;
+    }
+
+    long trimExcess() {
+        int chunkSize = config().getChunkSize();
+        int keep = storageProperties.getToken().getMaxTokensPerUser();
+        long total = 0;
+        List<String> deleted;
+        do {
+            deleted = tokenRepository.deleteExcessChunk(keep, chunkSize);
+            // Токены ещё не истекли и могли остаться в кэше
+            deleted.forEach(tokenCache::evict);
+            total += deleted.size();
+        } while (deleted.size() == chunkSize && pause());
+        return total;
+    }
+
+    private void record(String reason, long rows) {
+        DistributionSummary.builder("auth.token.reaper.removed")
+                .description("Tokens removed per reaper run")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    /**
+     * Пауза между пачками, чтобы не вытеснять запросы пользователей.
+     * Возвращает false, если поток прерван и очистку пора прекратить.
+     */
+    private boolean pause() {
+        long pauseMs = config().getChunkPauseMs();
+        if (pauseMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private StorageProperties.ReaperConfig config() {
+        return storageProperties.getToken().getReaper();
+    }
+}
@@ -0,0 +1,116 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.TokenRevocation;
+import ru.netology.cloudStorage.repository.TokenRevocationRepository;
+import ru.netology.cloudStorage.util.BloomFilter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отозванные подписанные токены. Проверка идёт по фильтру Блума, и только при его срабатывании —
+ * по точному множеству, поэтому для неотозванного токена это несколько чтений из массива.
+ * Отзыв сохраняется в token_revocations; при старте и затем периодически таблица перечитывается,
+ * так что отзыв на другом узле вступает в силу через refresh-interval-ms.
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final TokenRevocationRepository revocationRepository;
+    private final StorageProperties.RevocationConfig config;
+    private final boolean enabled;
+
+    private final Map<String, LocalDateTime> revoked = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private volatile BloomFilter filter;
+    private int capacity;
+    private LocalDateTime lastRefresh = EPOCH;
+
+    public TokenRevocationList(TokenRevocationRepository revocationRepository, StorageProperties storageProperties) {
+        this.revocationRepository = revocationRepository;
+        this.config = storageProperties.getToken().getRevocation();
+        this.enabled = storageProperties.getToken().isStateless();
+        this.capacity = config.getExpectedEntries();
+        this.filter = new BloomFilter(capacity, config.getFalsePositiveRate());
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        if (enabled) {
+            refresh();
+            log.info("Token revocation list loaded: {} revoked tokens", revoked.size());
+        }
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return filter.mightContain(tokenId) && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * Отзыв действует на этом узле сразу, ещё до коммита записи в таблицу.
+     */
+    public void revoke(String tokenId, Long userId, LocalDateTime expiresAt) {
+        if (revoked.containsKey(tokenId)) {
+            return;
+        }
+        add(tokenId, expiresAt);
+        revocationRepository.save(new TokenRevocation(tokenId, userId, expiresAt));
+    }
+
+    /**
+     * Подтягивает отзывы с других узлов и убирает истёкшие. Окно чтения перекрывается
+     * с прошлым на интервал обновления: отзыв, закоммиченный позже соседнего, не теряется.
+     */
+    @Scheduled(initialDelayString = "${cloud.storage.token.revocation.refresh-interval-ms:30000}",
+            fixedDelayString = "${cloud.storage.token.revocation.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (TokenRevocation revocation : revocationRepository.findActiveSince(lastRefresh, now)) {
+            if (!revoked.containsKey(revocation.getTokenId())) {
+                add(revocation.getTokenId(), revocation.getExpiresAt());
+            }
+        }
+        lastRefresh = now.minusNanos(config.getRefreshIntervalMs() * 1_000_000);
+
+        if (revoked.values().removeIf(expiresAt -> expiresAt.isBefore(now))) {
+            // Из фильтра Блума нельзя удалить ключ, поэтому он строится заново
+            synchronized (lock) {
+                rebuild();
+            }
+            int deleted = revocationRepository.deleteExpired(now);
+            log.debug("Expired token revocations removed: {} rows", deleted);
+        }
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void add(String tokenId, LocalDateTime expiresAt) {
+        synchronized (lock) {
+            revoked.put(tokenId, expiresAt);
+            filter.add(tokenId);
+            if (revoked.size() > capacity) {
+                capacity *= 2;
+                rebuild();
+            }
+        }
+    }
+
+    private void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(capacity, config.getFalsePositiveRate());
+        revoked.keySet().forEach(rebuilt::add);
+        filter = rebuilt;
+    }
+}
@@ -6,13 +6,14 @@ import ru.netology.cloudStorage.entity.User;
 import ru.netology.cloudStorage.repository.AuthTokenRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,7 +25,10 @@ public class TokenService {
 
     private final AuthTokenRepository tokenRepository;
     private final StorageProperties storageProperties;
-    private final int MAX_TOKENS_PER_USER = 5;
+    private final TokenCache tokenCache;
+    private final StorageMetrics storageMetrics;
+    private final TokenSigner tokenSigner;
+    private final TokenRevocationList tokenRevocationList;
 
     /**
      * Генерация нового токена для пользователя.
@@ -34,7 +38,17 @@ public class TokenService {
     public String generateToken(User user) {
         log.info("Generating token for user: {}", user.getLogin());
 
+        if (tokenSigner.isEnabled()) {
+            // Подписанный токен не хранится: старые токены пользователя действуют до своего срока
+            LocalDateTime expiresAt = LocalDateTime.now()
+                    .plusHours(storageProperties.getToken().getValidityHours());
+            String token = tokenSigner.issue(user, expiresAt);
+            log.info("Generated signed token for user: {}, expires at: {}", user.getLogin(), expiresAt);
+            return token;
+        }
+
         tokenRepository.deleteByUser(user);
+        evictNowAndAfterCommit(() -> tokenCache.evictUser(user.getId()));
         log.debug("Deleted old tokens for user: {}", user.getLogin());
 
         String token = UUID.randomUUID().toString();
@@ -53,15 +67,29 @@ public class TokenService {
     /**
      * Валидация токена.
      * Возвращает UserDetails если токен валиден.
+     * Попадание в кэш не открывает транзакцию и не обращается к БД.
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Optional<UserDetails> validateToken(String token) {
-        log.debug("Validating token: {}", token);
+        long start = System.nanoTime();
+        String outcome = "invalid";
 
         try {
-            if (token.startsWith("Bearer ")) {
-                token = token.substring(7).trim();
-                log.debug("Token after removing Bearer: {}", token);
+            token = stripBearer(token);
+
+            if (tokenSigner.isSigned(token)) {
+                Optional<TokenSigner.Claims> claims = tokenSigner.verify(token);
+                if (claims.isEmpty() || tokenRevocationList.isRevoked(claims.get().tokenId())) {
+                    return Optional.empty();
+                }
+                outcome = "signed";
+                return Optional.of(claims.get().toUser());
+            }
+
+            Optional<User> cachedUser = tokenCache.get(token);
+            if (cachedUser.isPresent()) {
+                outcome = "cache_hit";
+                return Optional.of(cachedUser.get());
             }
 
             Optional<AuthToken> authTokenOpt = tokenRepository.findByTokenWithUser(token);
@@ -85,13 +113,18 @@ public class TokenService {
             }
 
             User user = authToken.getUser();
+            tokenCache.put(token, user, authToken.getExpiresAt());
             log.debug("Token valid for user: {}", user.getLogin());
 
+            outcome = "cache_miss";
             return Optional.of(user);
 
         } catch (Exception e) {
             log.error("Token validation error for token {}: {}", token, e.getMessage(), e);
+            outcome = "error";
             return Optional.empty();
+        } finally {
+            storageMetrics.recordTokenValidation(outcome, System.nanoTime() - start);
         }
     }
 
@@ -100,8 +133,16 @@ public class TokenService {
      */
     @Transactional
     public void invalidateToken(String token) {
-        log.info("Invalidating token: {}", token);
-        int deleted = tokenRepository.deleteByToken(token);
+        log.info("Invalidating token");
+        String normalized = stripBearer(token);
+        if (tokenSigner.isSigned(normalized)) {
+            tokenSigner.verify(normalized).ifPresentOrElse(
+                    claims -> tokenRevocationList.revoke(claims.tokenId(), claims.userId(), claims.expiresAt()),
+                    () -> log.warn("Signed token is invalid or expired, nothing to revoke"));
+            return;
+        }
+        evictNowAndAfterCommit(() -> tokenCache.evict(normalized));
+        int deleted = tokenRepository.deleteByToken(normalized);
 
         if (deleted > 0) {
             log.debug("Token successfully invalidated: {}", token);
@@ -111,44 +152,25 @@ public class TokenService {
     }
 
     /**
-     * Очистка просроченных токенов по расписанию.
-     * Выполняется каждый час.
+     * Параллельная валидация могла прочитать токен до коммита удаления и вернуть его в кэш,
+     * поэтому запись выкидывается ещё раз после коммита.
      */
-    @Scheduled(fixedRate = 3600000)
-    @Transactional
-    public void cleanupExpiredTokens() {
-        LocalDateTime now = LocalDateTime.now();
-        List<AuthToken> expiredTokens = tokenRepository.findByExpiresAtBefore(now);
-
-        if (!expiredTokens.isEmpty()) {
-            tokenRepository.deleteAll(expiredTokens);
-            log.info("Scheduled cleanup: deleted {} expired tokens", expiredTokens.size());
+    private void evictNowAndAfterCommit(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
         }
-
-        cleanupExcessiveTokens();
     }
 
-    /**
-     * Очистка лишних токенов (если у пользователя больше 5 активных токенов).
-     */
-    @Transactional
-    public void cleanupExcessiveTokens() {
-        List<Object[]> userTokenCounts = tokenRepository.findUsersWithTokenCount();
-
-        for (Object[] result : userTokenCounts) {
-            Long userId = (Long) result[0];
-            Long tokenCount = (Long) result[1];
-
-            if (tokenCount > MAX_TOKENS_PER_USER) {
-                List<AuthToken> userTokens = tokenRepository.findByUserIdOrderByCreatedAtAsc(userId);
-                List<AuthToken> tokensToDelete = userTokens.subList(0, userTokens.size() - MAX_TOKENS_PER_USER);
-
-                if (!tokensToDelete.isEmpty()) {
-                    tokenRepository.deleteAll(tokensToDelete);
-                    log.debug("Deleted {} excessive tokens for user id: {}",
-                            tokensToDelete.size(), userId);
-                }
-            }
+    private String stripBearer(String token) {
+        if (token.startsWith("Bearer ")) {
+            return token.substring(7).trim();
         }
+        return token;
     }
-}
\ No newline at end of file
+}
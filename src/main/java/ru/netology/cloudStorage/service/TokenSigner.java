@@ -0,0 +1,152 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Подписанные HMAC-SHA256 токены: v1.{id ключа}.{данные}.{подпись}.
+ * Данные — id пользователя, срок действия, случайный id токена для отзыва и логин.
+ * Id ключа в токене позволяет принимать токены, подписанные прежними ключами после ротации.
+ */
+@Component
+@Slf4j
+public class TokenSigner {
+
+    private static final String PREFIX = "v1.";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_BYTES = 32;
+    private static final int TOKEN_ID_BYTES = 16;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Map<String, Mac> keys = new HashMap<>();
+    private final String currentKeyId;
+    private final SecureRandom random = new SecureRandom();
+
+    public TokenSigner(StorageProperties storageProperties) {
+        StorageProperties.TokenConfig config = storageProperties.getToken();
+        if (!config.isStateless()) {
+            currentKeyId = null;
+            return;
+        }
+        if (config.getSecretKey() == null
+                || config.getSecretKey().getBytes(StandardCharsets.UTF_8).length < MIN_KEY_BYTES) {
+            throw new IllegalStateException("Stateless tokens require a secret key of at least "
+                    + MIN_KEY_BYTES + " bytes");
+        }
+        currentKeyId = register(config.getSecretKey());
+        config.getPreviousSecretKeys().forEach(this::register);
+        log.info("Signed tokens enabled: key {}, {} previous keys accepted",
+                currentKeyId, keys.size() - 1);
+    }
+
+    public boolean isEnabled() {
+        return currentKeyId != null;
+    }
+
+    public boolean isSigned(String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    public String issue(User user, LocalDateTime expiresAt) {
+        byte[] tokenId = new byte[TOKEN_ID_BYTES];
+        random.nextBytes(tokenId);
+        String claims = user.getId() + ":" + expiresAt.atZone(ZoneId.systemDefault()).toEpochSecond()
+                + ":" + ENCODER.encodeToString(tokenId) + ":" + user.getLogin();
+        String body = PREFIX + currentKeyId + "." + ENCODER.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        return body + "." + ENCODER.encodeToString(mac(currentKeyId).doFinal(body.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Проверка подписи и срока действия. Отзыв проверяется отдельно, по Claims.tokenId.
+     */
+    public Optional<Claims> verify(String token) {
+        if (!isEnabled() || !isSigned(token)) {
+            return Optional.empty();
+        }
+        int keyEnd = token.indexOf('.', PREFIX.length());
+        int bodyEnd = token.lastIndexOf('.');
+        if (keyEnd < 0 || bodyEnd <= keyEnd) {
+            return Optional.empty();
+        }
+        String keyId = token.substring(PREFIX.length(), keyEnd);
+        if (!keys.containsKey(keyId)) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] expected = mac(keyId).doFinal(token.substring(0, bodyEnd).getBytes(StandardCharsets.US_ASCII));
+            if (!MessageDigest.isEqual(expected, DECODER.decode(token.substring(bodyEnd + 1)))) {
+                return Optional.empty();
+            }
+            String[] claims = new String(DECODER.decode(token.substring(keyEnd + 1, bodyEnd)),
+                    StandardCharsets.UTF_8).split(":", 4);
+            if (claims.length != 4) {
+                return Optional.empty();
+            }
+            long expiresAt = Long.parseLong(claims[1]);
+            if (expiresAt <= Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Claims(Long.parseLong(claims[0]), claims[3],
+                    LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAt), ZoneId.systemDefault()), claims[2]));
+        } catch (IllegalArgumentException e) {
+            // некорректный base64 или число
+            return Optional.empty();
+        }
+    }
+
+    private String register(String secret) {
+        byte[] key = secret.getBytes(StandardCharsets.UTF_8);
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            String keyId = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key), 0, 4);
+            keys.put(keyId, mac);
+            return keyId;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize token signing key", e);
+        }
+    }
+
+    /**
+     * Mac не потокобезопасен, поэтому каждый вызов работает с копией инициализированного экземпляра.
+     */
+    private Mac mac(String keyId) {
+        try {
+            return (Mac) keys.get(keyId).clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(ALGORITHM + " does not support cloning", e);
+        }
+    }
+
+    public record Claims(Long userId, String login, LocalDateTime expiresAt, String tokenId) {
+
+        /**
+         * Пользователь из данных токена, без запроса в БД.
+         */
+        public User toUser() {
+            User user = new User();
+            user.setId(userId);
+            user.setLogin(login);
+            return user;
+        }
+    }
+}
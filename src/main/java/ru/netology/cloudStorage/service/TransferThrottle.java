@@ -0,0 +1,198 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.util.TokenBucket;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничение скорости передачи и частоты запросов: ведро на пользователя и общее.
+ * Байтовые лимиты применяются к самим потокам — цикл копирования засыпает на время,
+ * выданное ведром, поэтому один клиент не забирает весь диск и канал, но и не получает отказ.
+ * Ожидание пишется в storage.throttle.wait с тегами kind (bytes/requests) и scope (user/global).
+ */
+@Component
+@Slf4j
+public class TransferThrottle {
+
+    static final String BYTES = "bytes";
+    static final String REQUESTS = "requests";
+    static final String USER = "user";
+    static final String GLOBAL = "global";
+
+    private final StorageProperties.RateLimitConfig config;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final TokenBucket globalBytes;
+    private final TokenBucket globalRequests;
+    private final Map<String, TokenBucket> userBytes = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> userRequests = new ConcurrentHashMap<>();
+    private final Counter rejected;
+
+    public TransferThrottle(StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        this(storageProperties, meterRegistry, System::nanoTime);
+    }
+
+    TransferThrottle(StorageProperties storageProperties, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.config = storageProperties.getRateLimit();
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.globalBytes = bucket(config.getGlobalBytesPerSecond());
+        this.globalRequests = bucket(config.getGlobalRequestsPerSecond());
+        this.rejected = Counter.builder("storage.throttle.rejected")
+                .description("Requests rejected because the rate limit wait was too long")
+                .register(meterRegistry);
+        if (config.isEnabled()) {
+            log.info("Rate limits: {} B/s per user, {} B/s total, {} req/s per user, {} req/s total",
+                    config.getUserBytesPerSecond(), config.getGlobalBytesPerSecond(),
+                    config.getUserRequestsPerSecond(), config.getGlobalRequestsPerSecond());
+        }
+    }
+
+    /**
+     * Ограничены ли байтовые передачи. Если да, отдача не передаётся в sendfile:
+     * контейнер отправил бы файл мимо цикла, в котором действует лимит.
+     */
+    public boolean limitsBytes() {
+        return config.isEnabled() && (globalBytes != null || config.getUserBytesPerSecond() > 0);
+    }
+
+    public boolean limitsRequests() {
+        return config.isEnabled() && (globalRequests != null || config.getUserRequestsPerSecond() > 0);
+    }
+
+    public InputStream throttle(InputStream in, String user) {
+        if (!limitsBytes()) {
+            return in;
+        }
+        TokenBucket userBucket = userBucket(userBytes, user, config.getUserBytesPerSecond());
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    acquireBytes(userBucket, 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    acquireBytes(userBucket, read);
+                }
+                return read;
+            }
+        };
+    }
+
+    public OutputStream throttle(OutputStream out, String user) {
+        if (!limitsBytes()) {
+            return out;
+        }
+        TokenBucket userBucket = userBucket(userBytes, user, config.getUserBytesPerSecond());
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                acquireBytes(userBucket, 1);
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                acquireBytes(userBucket, len);
+                out.write(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * Допуск запроса: ждёт своей очереди, если ожидание не дольше max-request-wait-ms, иначе false.
+     */
+    public boolean admitRequest(String user) throws InterruptedIOException {
+        if (!limitsRequests()) {
+            return true;
+        }
+        long maxWait = TimeUnit.MILLISECONDS.toNanos(config.getMaxRequestWaitMs());
+        TokenBucket userBucket = userBucket(userRequests, user, config.getUserRequestsPerSecond());
+        long userWait = userBucket != null ? userBucket.reserve(1, maxWait) : 0;
+        long globalWait = userWait >= 0 && globalRequests != null ? globalRequests.reserve(1, maxWait) : 0;
+        if (globalWait < 0 && userBucket != null) {
+            // Запрос не пройдёт — место в ведре пользователя ему больше не нужно
+            userBucket.release(1);
+        }
+        if (userWait < 0 || globalWait < 0) {
+            rejected.increment();
+            log.debug("Request of user {} rejected by {} rate limit", user, userWait < 0 ? USER : GLOBAL);
+            return false;
+        }
+        pause(REQUESTS, userWait, globalWait);
+        return true;
+    }
+
+    /**
+     * Полные вёдра не отличаются от новых: реестр держит только активных пользователей.
+     */
+    @Scheduled(fixedDelayString = "${cloud.storage.rate-limit.idle-evict-interval-ms:60000}")
+    public void evictIdle() {
+        userBytes.values().removeIf(TokenBucket::isFull);
+        userRequests.values().removeIf(TokenBucket::isFull);
+    }
+
+    int userBuckets() {
+        return userBytes.size() + userRequests.size();
+    }
+
+    private void acquireBytes(TokenBucket userBucket, long bytes) throws InterruptedIOException {
+        long userWait = userBucket != null ? userBucket.reserve(bytes) : 0;
+        long globalWait = globalBytes != null ? globalBytes.reserve(bytes) : 0;
+        pause(BYTES, userWait, globalWait);
+    }
+
+    private void pause(String kind, long userWait, long globalWait) throws InterruptedIOException {
+        long wait = Math.max(userWait, globalWait);
+        if (wait <= 0) {
+            return;
+        }
+        Timer.builder("storage.throttle.wait")
+                .description("Time transfers and requests spent waiting for rate limits")
+                .tag("kind", kind)
+                .tag("scope", userWait >= globalWait ? USER : GLOBAL)
+                .register(meterRegistry)
+                .record(wait, TimeUnit.NANOSECONDS);
+        try {
+            Thread.sleep(Duration.ofNanos(wait));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled");
+        }
+    }
+
+    private TokenBucket userBucket(Map<String, TokenBucket> buckets, String user, long rate) {
+        if (user == null || rate <= 0) {
+            return null;
+        }
+        return buckets.computeIfAbsent(user, key -> new TokenBucket(rate, config.getBurstMs(), clock));
+    }
+
+    private TokenBucket bucket(long rate) {
+        return rate > 0 ? new TokenBucket(rate, config.getBurstMs(), clock) : null;
+    }
+}
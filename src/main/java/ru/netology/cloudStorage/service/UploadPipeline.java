@@ -0,0 +1,210 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая обработка файла после коммита загрузки: этапы ProcessingStage по порядку,
+ * затем результаты одним UPDATE. Очередь ограничена: если она полна дольше enqueue-timeout-ms,
+ * файл не ставится в неё, а считается в storage.processing.dropped и подбирается
+ * периодическим досмотром необработанных строк. Так загрузка не ждёт обработку дольше таймаута,
+ * а память не растёт при всплеске.
+ */
+@Component
+@Slf4j
+public class UploadPipeline {
+
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final PreviewStore previewStore;
+    private final List<ProcessingStage> stages;
+    private final StorageProperties.ProcessingConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final BlockingQueue<Long> queue;
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final Counter dropped;
+    private final List<Thread> workers = new ArrayList<>();
+
+    public UploadPipeline(FileRepository fileRepository, FileStorageService fileStorageService,
+                          PreviewStore previewStore, List<ProcessingStage> stages,
+                          StorageProperties storageProperties, MeterRegistry meterRegistry) {
+        this.fileRepository = fileRepository;
+        this.fileStorageService = fileStorageService;
+        this.previewStore = previewStore;
+        this.stages = stages;
+        this.config = storageProperties.getProcessing();
+        this.meterRegistry = meterRegistry;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.dropped = Counter.builder("storage.processing.dropped")
+                .description("Uploads not queued for processing because the queue was full")
+                .register(meterRegistry);
+        Gauge.builder("storage.processing.queue", queue, BlockingQueue::size)
+                .description("Files waiting for post-upload processing")
+                .register(meterRegistry);
+    }
+
+    @jakarta.annotation.PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        for (int i = 0; i < config.getWorkers(); i++) {
+            workers.add(Thread.ofVirtual().name("upload-pipeline-" + i).start(this::work));
+        }
+        log.info("Upload processing pipeline started: {} workers, stages {}",
+                config.getWorkers(), stages.stream().map(ProcessingStage::name).toList());
+    }
+
+    @jakarta.annotation.PreDestroy
+    public void stop() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Событие публикуется в транзакции сохранения и обрабатывается после её коммита:
+     * строка файла к этому моменту видна рабочим потокам.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStored(FileStored event) {
+        if (config.isEnabled()) {
+            submit(event.fileId(), config.getEnqueueTimeoutMs());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDeleted(FileDeleted event) {
+        previewStore.delete(event.fileId());
+    }
+
+    boolean submit(Long fileId, long timeoutMs) {
+        if (!pending.add(fileId)) {
+            return true;
+        }
+        try {
+            if (queue.offer(fileId, timeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.remove(fileId);
+        dropped.increment();
+        log.debug("Processing queue is full, file {} left for the sweep", fileId);
+        return false;
+    }
+
+    /**
+     * Досмотр: необработанные файлы старше интервала ставятся в очередь, пока в ней есть место.
+     */
+    @Scheduled(initialDelayString = "${cloud.storage.processing.sweep-interval-ms:300000}",
+            fixedDelayString = "${cloud.storage.processing.sweep-interval-ms:300000}")
+    public int sweep() {
+        int capacity = Math.min(queue.remainingCapacity(), config.getSweepBatchSize());
+        if (!config.isEnabled() || capacity == 0) {
+            return 0;
+        }
+        LocalDateTime before = LocalDateTime.now().minusNanos(config.getSweepIntervalMs() * 1_000_000);
+        int queued = 0;
+        for (Long id : fileRepository.findUnprocessed(before, Limit.of(capacity))) {
+            if (pending.add(id)) {
+                if (queue.offer(id)) {
+                    queued++;
+                } else {
+                    pending.remove(id);
+                    break;
+                }
+            }
+        }
+        if (queued > 0) {
+            log.info("Processing sweep queued {} unprocessed files", queued);
+        }
+        return queued;
+    }
+
+    public int queueSize() {
+        return queue.size();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Long fileId;
+            try {
+                fileId = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                process(fileId);
+            } catch (RuntimeException e) {
+                log.error("Processing of file {} failed: {}", fileId, e.getMessage());
+            } finally {
+                pending.remove(fileId);
+            }
+        }
+    }
+
+    /**
+     * Ошибка этапа записывается в журнал и storage.processing.failures, остальные этапы выполняются.
+     * Файл отмечается обработанным в любом случае, чтобы досмотр не повторял его бесконечно.
+     */
+    void process(Long fileId) {
+        Optional<File> found = fileRepository.findById(fileId);
+        if (found.isEmpty()) {
+            return;
+        }
+        File file = found.get();
+        ProcessingStage.Context context = new ProcessingStage.Context(file, fileStorageService.resolvePath(file));
+
+        for (ProcessingStage stage : stages) {
+            long started = System.nanoTime();
+            try {
+                stage.process(context);
+            } catch (Exception e) {
+                Counter.builder("storage.processing.failures")
+                        .description("Post-upload processing stage failures")
+                        .tag("stage", stage.name())
+                        .register(meterRegistry)
+                        .increment();
+                log.warn("Processing stage {} failed for file {}: {}", stage.name(), fileId, e.getMessage());
+            } finally {
+                Timer.builder("storage.processing.stage")
+                        .description("Post-upload processing stage latency")
+                        .tag("stage", stage.name())
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        fileRepository.saveProcessing(fileId, context.getChecksum(), context.getContentType(), LocalDateTime.now());
+        log.debug("File {} processed: {} {}", fileId, context.getContentType(), context.getChecksum());
+    }
+
+    public record FileStored(Long fileId) {
+    }
+
+    public record FileDeleted(Long fileId) {
+    }
+}
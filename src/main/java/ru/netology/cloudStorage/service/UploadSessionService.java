@@ -0,0 +1,336 @@
+package ru.netology.cloudStorage.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.netology.cloudStorage.DTO.UploadSessionResponse;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.UploadSession;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.UploadSessionRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Загрузка файла по частям: части приходят в любом порядке и параллельно
+ * и пишутся позиционно в заранее созданный файл нужного размера.
+ * Полученные части хранятся в БД, поэтому загрузку можно продолжить после обрыва.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionService {
+
+    static final String SESSION_DIR = ".sessions";
+    private static final String DATA_SUFFIX = ".part";
+    private static final int MIN_CHUNK_SIZE = 64 * 1024;
+
+    private final UploadSessionRepository sessionRepository;
+    private final FileStorageService fileStorageService;
+    private final StorageProperties storageProperties;
+    private final BufferPool bufferPool;
+    private final DiskIoLimiter diskIoLimiter;
+    private final StorageMetrics storageMetrics;
+    private final QuotaService quotaService;
+    private final TransferThrottle transferThrottle;
+
+    /**
+     * Запись частей и закрытие (commit, отмена, сборка мусора) одной сессии взаимно исключены.
+     * Запись есть в карте, только пока идёт запись части или закрытие.
+     */
+    private final ConcurrentHashMap<String, SessionGuard> guards = new ConcurrentHashMap<>();
+    private Path sessionLocation;
+
+    @jakarta.annotation.PostConstruct
+    public void init() {
+        try {
+            sessionLocation = Paths.get(storageProperties.getPath()).toAbsolutePath().normalize().resolve(SESSION_DIR);
+            Files.createDirectories(sessionLocation);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize upload session storage", e);
+        }
+    }
+
+    @Transactional
+    public UploadSession create(String filename, long size, Integer chunkSize, User user) throws IOException {
+        fileStorageService.checkNewFile(filename, user);
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative: " + size);
+        }
+        quotaService.checkAvailable(user, size);
+        int effectiveChunkSize = resolveChunkSize(chunkSize);
+        if ((size + effectiveChunkSize - 1) / effectiveChunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many chunks for size " + size);
+        }
+
+        UploadSession session = new UploadSession(UUID.randomUUID().toString(), user, filename, size, effectiveChunkSize);
+        Path data = dataPath(session.getId());
+        // Размер задаётся сразу, части пишутся по своим смещениям
+        diskIoLimiter.run(() -> {
+            try (RandomAccessFile file = new RandomAccessFile(data.toFile(), "rw")) {
+                file.setLength(size);
+            }
+        });
+        try {
+            sessionRepository.save(session);
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(data);
+            throw e;
+        }
+
+        log.info("Upload session {} created: {} ({} bytes, {} chunks of {}) for user: {}",
+                session.getId(), filename, size, session.getChunkCount(), effectiveChunkSize, user.getLogin());
+        return session;
+    }
+
+    /**
+     * Запись одной части. Часть отмечается полученной только после сброса на диск,
+     * транзакция на время чтения тела не открывается.
+     */
+    public long writeChunk(String sessionId, int index, long contentLength, InputStream in, User user)
+            throws IOException {
+        beginWrite(sessionId);
+        try (StorageMetrics.Transfer transfer = storageMetrics.startUpload(user.getLogin())) {
+            UploadSession session = getSession(sessionId, user);
+            if (index < 0 || index >= session.getChunkCount()) {
+                throw new IllegalArgumentException("Chunk index out of range: " + index);
+            }
+            long offset = (long) index * session.getChunkSize();
+            long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+            if (contentLength >= 0 && contentLength != expected) {
+                throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+            }
+
+            writeAt(transferThrottle.throttle(in, user.getLogin()), dataPath(sessionId), offset, expected);
+            sessionRepository.markChunkReceived(sessionId, index);
+            transfer.complete(expected);
+            log.debug("Upload session {}: chunk {} received ({} bytes)", sessionId, index, expected);
+            return expected;
+        } finally {
+            endWrite(sessionId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UploadSessionResponse status(String sessionId, User user) {
+        return toResponse(getSession(sessionId, user));
+    }
+
+    public UploadSessionResponse toResponse(UploadSession session) {
+        return new UploadSessionResponse(session.getId(), session.getFilename(), session.getSize(),
+                session.getChunkSize(), session.getChunkCount(),
+                sessionRepository.findReceivedChunks(session.getId()));
+    }
+
+    /**
+     * Создание файла из полученных частей через те же проверки, что и у обычной загрузки.
+     */
+    @Transactional
+    public File commit(String sessionId, User user) throws IOException {
+        beginClose(sessionId);
+        boolean deferred = releaseAfterCompletion(sessionId);
+        try {
+            UploadSession session = getSession(sessionId, user);
+            long received = sessionRepository.countReceivedChunks(sessionId);
+            if (received < session.getChunkCount()) {
+                throw new IllegalStateException("Upload is incomplete: " + received + " of "
+                        + session.getChunkCount() + " chunks received");
+            }
+
+            File file = fileStorageService.storeAssembled(dataPath(sessionId), session.getFilename(), user);
+            sessionRepository.delete(session);
+            log.info("Upload session {} committed as {} for user: {}", sessionId, session.getFilename(), user.getLogin());
+            return file;
+        } finally {
+            if (!deferred) {
+                guards.remove(sessionId);
+            }
+        }
+    }
+
+    @Transactional
+    public void abort(String sessionId, User user) throws IOException {
+        beginClose(sessionId);
+        boolean deferred = releaseAfterCompletion(sessionId);
+        try {
+            UploadSession session = getSession(sessionId, user);
+            sessionRepository.delete(session);
+            Files.deleteIfExists(dataPath(sessionId));
+            log.info("Upload session {} aborted by user: {}", sessionId, user.getLogin());
+        } finally {
+            if (!deferred) {
+                guards.remove(sessionId);
+            }
+        }
+    }
+
+    /**
+     * Удаление сессий без активности дольше ttl и файлов, оставшихся без сессии.
+     */
+    @Scheduled(initialDelayString = "${cloud.storage.upload.session.gc-interval-ms:900000}",
+            fixedDelayString = "${cloud.storage.upload.session.gc-interval-ms:900000}")
+    public void collectAbandoned() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(storageProperties.getUpload().getSession().getTtlHours());
+        int removed = 0;
+
+        for (String sessionId : sessionRepository.findAbandoned(cutoff)) {
+            if (!tryBeginClose(sessionId)) {
+                continue;
+            }
+            try {
+                sessionRepository.deleteById(sessionId);
+                Files.deleteIfExists(dataPath(sessionId));
+                removed++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not remove abandoned upload session {}: {}", sessionId, e.getMessage());
+            } finally {
+                guards.remove(sessionId);
+            }
+        }
+
+        long cutoffMillis = cutoff.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionLocation, "*" + DATA_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String sessionId = name.substring(0, name.length() - DATA_SUFFIX.length());
+                if (Files.getLastModifiedTime(file).toMillis() < cutoffMillis
+                        && !guards.containsKey(sessionId)
+                        && !sessionRepository.existsById(sessionId)) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not scan upload session directory: {}", e.getMessage());
+        }
+
+        if (removed > 0) {
+            log.info("Removed {} abandoned upload sessions", removed);
+        }
+    }
+
+    private UploadSession getSession(String sessionId, User user) {
+        return sessionRepository.findByIdAndUser(sessionId, user)
+                .orElseThrow(() -> new RuntimeException("Upload session not found: " + sessionId));
+    }
+
+    private int resolveChunkSize(Integer requested) {
+        StorageProperties.SessionConfig config = storageProperties.getUpload().getSession();
+        if (requested == null) {
+            return config.getChunkSize();
+        }
+        if (requested < MIN_CHUNK_SIZE || requested > config.getMaxChunkSize()) {
+            throw new IllegalArgumentException("Chunk size must be between " + MIN_CHUNK_SIZE
+                    + " and " + config.getMaxChunkSize() + " bytes");
+        }
+        return requested;
+    }
+
+    private Path dataPath(String sessionId) {
+        // id приходит из URL, поэтому путь строится только из валидного UUID
+        return sessionLocation.resolve(UUID.fromString(sessionId) + DATA_SUFFIX);
+    }
+
+    private void writeAt(InputStream in, Path data, long offset, long expected) throws IOException {
+        ByteBuffer buffer = bufferPool.acquire();
+        try (FileChannel channel = FileChannel.open(data, StandardOpenOption.WRITE)) {
+            byte[] array = buffer.array();
+            long position = offset;
+            long remaining = expected;
+            while (remaining > 0) {
+                int read = in.read(array, 0, (int) Math.min(array.length, remaining));
+                if (read < 0) {
+                    throw new IllegalArgumentException("Chunk is shorter than expected: "
+                            + (expected - remaining) + " of " + expected + " bytes");
+                }
+                buffer.clear().limit(read);
+                long at = position;
+                diskIoLimiter.run(() -> {
+                    long target = at;
+                    while (buffer.hasRemaining()) {
+                        target += channel.write(buffer, target);
+                    }
+                });
+                position += read;
+                remaining -= read;
+            }
+            if (in.read() >= 0) {
+                throw new IllegalArgumentException("Chunk is longer than expected: " + expected + " bytes");
+            }
+            diskIoLimiter.run(() -> channel.force(false));
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void beginWrite(String sessionId) {
+        guards.compute(sessionId, (id, guard) -> {
+            if (guard == null) {
+                guard = new SessionGuard(false);
+            } else if (guard.closing) {
+                throw new IllegalStateException("Upload session is being closed: " + sessionId);
+            }
+            guard.writers++;
+            return guard;
+        });
+    }
+
+    private void endWrite(String sessionId) {
+        guards.computeIfPresent(sessionId, (id, guard) -> --guard.writers == 0 ? null : guard);
+    }
+
+    private boolean tryBeginClose(String sessionId) {
+        return guards.putIfAbsent(sessionId, new SessionGuard(true)) == null;
+    }
+
+    private void beginClose(String sessionId) {
+        if (!tryBeginClose(sessionId)) {
+            throw new IllegalStateException("Upload session is busy: " + sessionId);
+        }
+    }
+
+    /**
+     * Сессия остаётся закрытой для записи до конца транзакции,
+     * иначе часть могла бы прийти в уже перенесённый файл до коммита удаления сессии.
+     */
+    private boolean releaseAfterCompletion(String sessionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                guards.remove(sessionId);
+            }
+        });
+        return true;
+    }
+
+    private static final class SessionGuard {
+
+        private final boolean closing;
+        private int writers;
+
+        private SessionGuard(boolean closing) {
+            this.closing = closing;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ru.netology.cloudStorage.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Диапазон байт из заголовка Range (RFC 9110), границы включительно.
+ */
+public record ByteRange(long start, long end) {
+
+    private static final String BYTES_UNIT = "bytes=";
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * Разбор заголовка Range для файла заданного размера.
+     * Возвращает null, если заголовок синтаксически некорректен и должен игнорироваться,
+     * и пустой список, если ни один диапазон не выполним (ответ 416).
+     */
+    public static List<ByteRange> parse(String header, long size) {
+        if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length())) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String spec : header.substring(BYTES_UNIT.length()).split(",")) {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = trimmed.substring(0, dash).trim();
+                String last = trimmed.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    long suffix = Long.parseLong(last);
+                    if (suffix > 0 && size > 0) {
+                        ranges.add(new ByteRange(Math.max(0, size - suffix), size - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < size) {
+                    ranges.add(new ByteRange(start, Math.min(end, size - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+}
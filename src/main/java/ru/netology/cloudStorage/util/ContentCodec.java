@@ -0,0 +1,49 @@
+package ru.netology.cloudStorage.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кодеки хранения файлов. Имя совпадает с токеном Content-Encoding,
+ * поэтому сохранённые байты можно отдавать клиенту без перекодирования.
+ */
+public enum ContentCodec {
+
+    GZIP("gzip");
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final String encoding;
+
+    ContentCodec(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public OutputStream encoder(OutputStream out, int level) throws IOException {
+        return new GZIPOutputStream(out, STREAM_BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    public InputStream decoder(InputStream in) throws IOException {
+        return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+    }
+
+    public static ContentCodec fromEncoding(String encoding) {
+        for (ContentCodec codec : values()) {
+            if (codec.encoding.equalsIgnoreCase(encoding)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown codec: " + encoding);
+    }
+}
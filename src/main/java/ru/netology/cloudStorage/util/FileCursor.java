@@ -0,0 +1,47 @@
+package ru.netology.cloudStorage.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Курсор keyset-пагинации: значение ключа сортировки и id последней строки страницы.
+ * Для клиента это непрозрачная base64url-строка.
+ */
+public record FileCursor(FileSortKey sortKey, boolean descending, String value, long id) {
+
+    private static final String SEPARATOR = "\n";
+
+    public String encode() {
+        String raw = sortKey.name() + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FileCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            FileCursor decoded = new FileCursor(FileSortKey.valueOf(parts[0]), "desc".equals(parts[1]),
+                    parts[3], Long.parseLong(parts[2]));
+            decoded.typedValue();
+            return decoded;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * Значение ключа в типе колонки, для привязки к параметру запроса.
+     */
+    public Object typedValue() {
+        return switch (sortKey) {
+            case DATE -> LocalDateTime.parse(value);
+            case SIZE -> Long.parseLong(value);
+            case NAME -> value;
+        };
+    }
+}
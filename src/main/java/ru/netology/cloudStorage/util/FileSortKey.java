@@ -0,0 +1,49 @@
+package ru.netology.cloudStorage.util;
+
+import java.util.Locale;
+
+/**
+ * Допустимые ключи сортировки списка файлов и соответствующие им колонки.
+ */
+public enum FileSortKey {
+
+    DATE("upload_date", true, true),
+    NAME("name", false, false),
+    SIZE("size", true, true);
+
+    private final String column;
+    private final boolean descendingByDefault;
+    private final boolean needsIdTiebreak;
+
+    FileSortKey(String column, boolean descendingByDefault, boolean needsIdTiebreak) {
+        this.column = column;
+        this.descendingByDefault = descendingByDefault;
+        this.needsIdTiebreak = needsIdTiebreak;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public boolean isDescendingByDefault() {
+        return descendingByDefault;
+    }
+
+    /**
+     * Имя файла уникально в пределах пользователя, остальным ключам нужен id для однозначного порядка.
+     */
+    public boolean needsIdTiebreak() {
+        return needsIdTiebreak;
+    }
+
+    public static FileSortKey parse(String value) {
+        if (value == null || value.isBlank()) {
+            return DATE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort key: " + value);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.netology.cloudStorage.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Поток, который бросает исключение, как только прочитано больше limit байт:
+ * загрузка сверх квоты обрывается на первом лишнем чанке, а не после записи всего тела.
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    private final long limit;
+    private final Supplier<? extends RuntimeException> onExceeded;
+    private long count;
+
+    public LimitedInputStream(InputStream in, long limit, Supplier<? extends RuntimeException> onExceeded) {
+        super(in);
+        this.limit = limit;
+        this.onExceeded = onExceeded;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    private void count(long bytes) {
+        count += bytes;
+        if (count > limit) {
+            throw onExceeded.get();
+        }
+    }
+}
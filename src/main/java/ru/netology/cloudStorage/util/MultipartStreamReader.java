@@ -0,0 +1,238 @@
+package ru.netology.cloudStorage.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Инкрементальный разбор multipart/form-data прямо из входного потока запроса.
+ * Тело каждой части отдаётся как InputStream, который заканчивается на разделителе,
+ * поэтому ни тело запроса, ни отдельные части не буферизуются целиком.
+ */
+public class MultipartStreamReader {
+
+    private final InputStream in;
+    private final byte[] buf;
+    private final byte[] delimiter;
+    private int pos;
+    private int limit;
+    private boolean finished;
+    private PartInputStream current;
+
+    public MultipartStreamReader(InputStream in, String boundary, byte[] buf) {
+        this.in = in;
+        this.buf = buf;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        if (buf.length < delimiter.length * 2) {
+            throw new IllegalArgumentException("Buffer is too small for boundary: " + boundary);
+        }
+        // Первый разделитель идёт без CRLF, добавляем его виртуально,
+        // чтобы преамбула разбиралась как обычная часть
+        buf[0] = '\r';
+        buf[1] = '\n';
+        this.limit = 2;
+        this.current = new PartInputStream();
+    }
+
+    /**
+     * Возвращает следующую часть или null, если достигнут закрывающий разделитель.
+     * Непрочитанный остаток предыдущей части пропускается.
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.skipRemaining();
+
+        if (!ensure(2)) {
+            throw new EOFException("Unexpected end of multipart stream");
+        }
+        if (buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        readLine();
+
+        Map<String, String> headers = new HashMap<>();
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        current = new PartInputStream();
+        return new Part(headers, current);
+    }
+
+    /**
+     * Пропускает части до первой с указанным именем поля.
+     */
+    public Part findPart(String name) throws IOException {
+        Part part;
+        while ((part = nextPart()) != null) {
+            if (name.equals(part.getName())) {
+                return part;
+            }
+        }
+        return null;
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = pos; i < limit - 1; i++) {
+                if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                    String line = new String(buf, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 2;
+                    return line;
+                }
+            }
+            if (pos == 0 && limit == buf.length) {
+                throw new IOException("Multipart header line is too long");
+            }
+            if (compactAndFill() < 0) {
+                throw new EOFException("Unexpected end of multipart headers");
+            }
+        }
+    }
+
+    private boolean ensure(int count) throws IOException {
+        while (limit - pos < count) {
+            if (compactAndFill() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compactAndFill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read > 0) {
+            limit += read;
+        }
+        return read;
+    }
+
+    private int indexOfDelimiter() {
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    public static class Part {
+
+        private final Map<String, String> headers;
+        private final InputStream body;
+
+        Part(Map<String, String> headers, InputStream body) {
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        public String getName() {
+            return dispositionParam("name");
+        }
+
+        public String getFilename() {
+            return dispositionParam("filename");
+        }
+
+        public String getContentType() {
+            return getHeader("content-type");
+        }
+
+        public InputStream getBody() {
+            return body;
+        }
+
+        private String dispositionParam(String param) {
+            String disposition = getHeader("content-disposition");
+            if (disposition == null) {
+                return null;
+            }
+            for (String token : disposition.split(";")) {
+                String trimmed = token.trim();
+                int eq = trimmed.indexOf('=');
+                if (eq > 0 && trimmed.substring(0, eq).trim().equalsIgnoreCase(param)) {
+                    String value = trimmed.substring(eq + 1).trim();
+                    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
+    private class PartInputStream extends InputStream {
+
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                int idx = indexOfDelimiter();
+                if (idx == pos) {
+                    pos += delimiter.length;
+                    done = true;
+                    return -1;
+                }
+                // Хвост буфера может оказаться началом разделителя, его не отдаём
+                int available = idx >= 0 ? idx - pos : limit - pos - (delimiter.length - 1);
+                if (available > 0) {
+                    int n = Math.min(len, available);
+                    System.arraycopy(buf, pos, b, off, n);
+                    pos += n;
+                    return n;
+                }
+                if (compactAndFill() < 0) {
+                    throw new EOFException("Unexpected end of multipart stream");
+                }
+            }
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] scratch = new byte[512];
+            while (read(scratch, 0, scratch.length) >= 0) {
+                // пропускаем остаток части
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package ru.netology.cloudStorage.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор поиска: сходство и имя последней строки страницы (имя уникально в пределах пользователя).
+ * При сортировке по имени score не используется. Для клиента — непрозрачная base64url-строка.
+ */
+public record SearchCursor(boolean byRelevance, float score, String name) {
+
+    private static final String SEPARATOR = "\n";
+
+    public String encode() {
+        String raw = (byRelevance ? "relevance" : "name") + SEPARATOR + score + SEPARATOR + name;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 3);
+            if (parts.length != 3 || !(parts[0].equals("relevance") || parts[0].equals("name"))) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new SearchCursor(parts[0].equals("relevance"), Float.parseFloat(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ru.netology.cloudStorage.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Маркерное ведро без блокировок. Уровень и время последнего пополнения упакованы в одно число —
+ * момент, к которому ведро вернётся в состояние «выданное оплачено» (GCRA): ведро полно,
+ * если этот момент не позже now - burst. Резервирование — один CAS этого числа.
+ * Разрешения выдаются в долг: вызывающий получает время, которое нужно подождать,
+ * поэтому передача замедляется, а не прерывается.
+ */
+public class TokenBucket {
+
+    private final double nanosPerPermit;
+    private final long burstNanos;
+    private final LongSupplier clock;
+    private final AtomicLong state;
+
+    public TokenBucket(long permitsPerSecond, long burstMs, LongSupplier clock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + permitsPerSecond);
+        }
+        this.nanosPerPermit = 1_000_000_000.0 / permitsPerSecond;
+        this.burstNanos = Math.max(0, burstMs) * 1_000_000;
+        this.clock = clock;
+        this.state = new AtomicLong(clock.getAsLong() - burstNanos);
+    }
+
+    /**
+     * Резервирует permits и возвращает, сколько наносекунд подождать перед их использованием.
+     */
+    public long reserve(long permits) {
+        return reserve(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * То же, но если ждать пришлось бы дольше maxWaitNanos, ничего не резервируется и возвращается -1.
+     */
+    public long reserve(long permits, long maxWaitNanos) {
+        long cost = (long) Math.ceil(permits * nanosPerPermit);
+        while (true) {
+            long now = clock.getAsLong();
+            long current = state.get();
+            long next = Math.max(current, now - burstNanos) + cost;
+            long wait = Math.max(0, next - now);
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (state.compareAndSet(current, next)) {
+                return wait;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Возвращает ранее зарезервированные permits, если они так и не понадобились.
+     * Возврат сверх burst не копится: reserve всё равно не опускает состояние ниже now - burst.
+     */
+    public void release(long permits) {
+        state.addAndGet(-(long) Math.ceil(permits * nanosPerPermit));
+    }
+
+    /**
+     * Полное ведро ничем не отличается от нового, и его можно убрать из реестра.
+     */
+    public boolean isFull() {
+        return state.get() <= clock.getAsLong() - burstNanos;
+    }
+}
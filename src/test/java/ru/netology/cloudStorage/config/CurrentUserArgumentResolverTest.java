@@ -0,0 +1,67 @@
+package ru.netology.cloudStorage.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.netology.cloudStorage.entity.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrentUserArgumentResolverTest {
+
+    private final CurrentUserArgumentResolver resolver = new CurrentUserArgumentResolver();
+    private MockHttpServletRequest request;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        request = new MockHttpServletRequest();
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testOnlyUserParametersAreSupported() throws Exception {
+        assertTrue(resolver.supportsParameter(parameter(0)));
+        assertFalse(resolver.supportsParameter(parameter(1)));
+    }
+
+    @Test
+    void testUserBoundByFilterIsResolved() throws Exception {
+        CurrentUserArgumentResolver.bind(request, user);
+
+        assertSame(user, resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null));
+    }
+
+    @Test
+    void testFallsBackToSecurityContextAndFailsWithoutUser() throws Exception {
+        assertThrows(AuthenticationCredentialsNotFoundException.class,
+                () -> resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+
+        assertSame(user, resolver.resolveArgument(parameter(0), null, new ServletWebRequest(request), null));
+    }
+
+    private static MethodParameter parameter(int index) throws NoSuchMethodException {
+        return new MethodParameter(CurrentUserArgumentResolverTest.class
+                .getDeclaredMethod("handler", User.class, String.class), index);
+    }
+
+    @SuppressWarnings("unused")
+    private void handler(User user, String filename) {
+    }
+}
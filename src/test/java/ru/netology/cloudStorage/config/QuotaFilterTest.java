@@ -0,0 +1,72 @@
+package ru.netology.cloudStorage.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.QuotaService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QuotaFilterTest {
+
+    private QuotaService quotaService;
+    private QuotaFilter filter;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        quotaService = mock(QuotaService.class);
+        when(quotaService.isEnabled()).thenReturn(true);
+        filter = new QuotaFilter(quotaService, new ObjectMapper());
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+        when(quotaService.remaining(user)).thenReturn(1000L);
+    }
+
+    @Test
+    void testOversizedUploadIsRejectedWithoutReadingBody() throws Exception {
+        MockHttpServletRequest request = upload("/cloud/file/stream", "application/octet-stream", 1001);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertEquals(413, response.getStatus());
+        assertEquals("close", response.getHeader("Connection"));
+        assertTrue(response.getContentAsString().contains("1000 bytes available"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void testFittingAndUnrelatedRequestsPass() throws Exception {
+        // Заголовки multipart не считаются размером файла
+        assertPasses(upload("/cloud/file", "multipart/form-data; boundary=x", 1000 + QuotaFilter.MULTIPART_OVERHEAD));
+        assertPasses(upload("/cloud/file/stream", "application/octet-stream", 1000));
+        assertPasses(upload("/cloud/file/batch", "application/json", 5000));
+
+        when(quotaService.isEnabled()).thenReturn(false);
+        assertPasses(upload("/cloud/file/stream", "application/octet-stream", 5000));
+    }
+
+    private void assertPasses(MockHttpServletRequest request) throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertSame(request, chain.getRequest());
+    }
+
+    private MockHttpServletRequest upload(String uri, String contentType, long contentLength) {
+        // Content-Length мок-запроса берётся из длины тела
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContextPath("/cloud");
+        request.setContentType(contentType);
+        request.setContent(new byte[(int) contentLength]);
+        CurrentUserArgumentResolver.bind(request, user);
+        return request;
+    }
+}
@@ -0,0 +1,167 @@
+package ru.netology.cloudStorage.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.service.ReadYourWrites;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ReplicaRouterTest {
+
+    private StorageProperties properties;
+    private DataSource primary;
+    private DataSource first;
+    private DataSource second;
+    private Connection primaryConnection;
+    private Connection firstConnection;
+    private Connection secondConnection;
+    private SimpleMeterRegistry registry;
+    private ReadYourWrites readYourWrites;
+    private ReplicaRouter router;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        properties = new StorageProperties();
+        properties.getReplica().setEnabled(true);
+        primaryConnection = mock(Connection.class);
+        firstConnection = mock(Connection.class);
+        secondConnection = mock(Connection.class);
+        primary = dataSource(primaryConnection);
+        first = dataSource(firstConnection);
+        second = dataSource(secondConnection);
+        registry = new SimpleMeterRegistry();
+        readYourWrites = new ReadYourWrites(properties);
+        router = new ReplicaRouter(primary, List.of(first, second), readYourWrites, properties, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void testReadsAlternateBetweenReplicas() throws SQLException {
+        assertSame(firstConnection, router.readConnection());
+        assertSame(secondConnection, router.readConnection());
+        assertSame(firstConnection, router.readConnection());
+        verify(primary, never()).getConnection();
+        assertEquals(3.0, reads(ReplicaRouter.REPLICA));
+    }
+
+    @Test
+    void testFailingReplicaIsSkippedUntilHealthy() throws SQLException {
+        when(first.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        assertSame(secondConnection, router.readConnection());
+        assertSame(secondConnection, router.readConnection());
+        assertEquals(1.0, registry.get("storage.replica.healthy").gauge().value());
+
+        when(second.getConnection()).thenThrow(new SQLException("connection refused"));
+        assertSame(primaryConnection, router.readConnection());
+        assertEquals(1.0, reads(ReplicaRouter.FALLBACK));
+
+        Connection recovered = mock(Connection.class);
+        stubLag(recovered, 0);
+        doReturn(recovered).when(first).getConnection();
+        router.checkHealth();
+        assertEquals(1.0, registry.get("storage.replica.healthy").gauge().value());
+        assertSame(recovered, router.readConnection());
+    }
+
+    @Test
+    void testLaggingReplicaIsTakenOutOfRotation() throws SQLException {
+        properties.getReplica().setMaxLagMs(1000);
+        stubLag(firstConnection, 5000);
+        stubLag(secondConnection, 200);
+
+        router.checkHealth();
+
+        assertEquals(1.0, registry.get("storage.replica.healthy").gauge().value());
+        assertSame(secondConnection, router.readConnection());
+        assertSame(secondConnection, router.readConnection());
+    }
+
+    @Test
+    void testUserReadsPrimaryAfterOwnWrite() throws SQLException {
+        User writer = login(1L);
+        TransactionExecution write = mock(TransactionExecution.class);
+        readYourWrites.afterCommit(write, null);
+
+        assertTrue(readYourWrites.isRecent(writer.getId()));
+        assertSame(primaryConnection, router.readConnection());
+        assertEquals(1.0, reads(ReplicaRouter.RECENT_WRITE));
+
+        login(2L);
+        assertSame(firstConnection, router.readConnection());
+    }
+
+    @Test
+    void testReadOnlyAndFailedCommitsDoNotOpenWindow() {
+        login(1L);
+        TransactionExecution read = mock(TransactionExecution.class);
+        when(read.isReadOnly()).thenReturn(true);
+        readYourWrites.afterCommit(read, null);
+        readYourWrites.afterCommit(mock(TransactionExecution.class), new IllegalStateException("rolled back"));
+
+        assertFalse(readYourWrites.isRecent());
+    }
+
+    @Test
+    void testReadOnlyConnectionOfProxyGoesToReplica() throws SQLException {
+        DataSource dataSource = router.dataSource();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(true);
+            connection.createStatement();
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+
+        verify(firstConnection).createStatement();
+        verify(primaryConnection).createStatement();
+    }
+
+    private DataSource dataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+
+    private void stubLag(Connection connection, long lagMs) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet result = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(result);
+        when(result.next()).thenReturn(true);
+        when(result.getLong(1)).thenReturn(lagMs);
+    }
+
+    private User login(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin("user" + id);
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(user, null, List.of()));
+        return user;
+    }
+
+    private double reads(String route) {
+        return registry.get("storage.replica.reads").tag("route", route).counter().count();
+    }
+}
@@ -11,15 +11,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
-import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -46,10 +47,25 @@ class FileControllerTest {
 
         when(storageProperties.getPath()).thenReturn("./test-uploads");
         when(storageProperties.getToken()).thenReturn(new StorageProperties.TokenConfig());
+        when(storageProperties.getUpload()).thenReturn(new StorageProperties.UploadConfig());
+        when(storageProperties.getDownload()).thenReturn(new StorageProperties.DownloadConfig());
+        when(storageProperties.getDedup()).thenReturn(new StorageProperties.DedupConfig());
+        when(storageProperties.getConcurrency()).thenReturn(new StorageProperties.ConcurrencyConfig());
+        when(storageProperties.getMetrics()).thenReturn(new StorageProperties.MetricsConfig());
+        when(storageProperties.getCompression()).thenReturn(new StorageProperties.CompressionConfig());
+        when(storageProperties.getLayout()).thenReturn(new StorageProperties.LayoutConfig());
+        when(storageProperties.getTiering()).thenReturn(new StorageProperties.TieringConfig());
+        when(storageProperties.getFileCache()).thenReturn(new StorageProperties.FileCacheConfig());
+        when(storageProperties.getListCache()).thenReturn(new StorageProperties.ListCacheConfig());
+        when(storageProperties.getBatch()).thenReturn(new StorageProperties.BatchConfig());
+        when(storageProperties.getArchive()).thenReturn(new StorageProperties.ArchiveConfig());
+        when(storageProperties.getProcessing()).thenReturn(new StorageProperties.ProcessingConfig());
+        when(storageProperties.getQuota()).thenReturn(new StorageProperties.QuotaConfig());
+        when(storageProperties.getRateLimit()).thenReturn(new StorageProperties.RateLimitConfig());
+        when(storageProperties.getReplica()).thenReturn(new StorageProperties.ReplicaConfig());
     }
 
     @Test
-    @WithMockUser(username = "testuser")
     void testUploadFile() throws Exception {
         MockMultipartFile file = new MockMultipartFile(
                 "file", "test.txt", "text/plain", "Test content".getBytes());
@@ -58,6 +74,7 @@ class FileControllerTest {
                         .file(file)
                         .param("name", "test.txt")
                         .header("auth-token", "test-token")
+                        .with(user(testUser))
                         .contentType(MediaType.MULTIPART_FORM_DATA))
                 .andExpect(status().isOk());
 
@@ -65,34 +82,87 @@ class FileControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "testuser")
+    void testStreamUploadFile() throws Exception {
+        when(fileStorageService.storeStream(any(), eq("test.txt"), any())).thenReturn(12L);
+
+        mockMvc.perform(post("/file/stream?filename=test.txt")
+                        .header("auth-token", "test-token")
+                        .with(user(testUser))
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("Test content".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bytes").value(12));
+
+        verify(fileStorageService).storeStream(any(), eq("test.txt"), any());
+    }
+
+    @Test
     void testDownloadFile() throws Exception {
         Path mockPath = Path.of("test.txt");
-        when(fileStorageService.load("test.txt", testUser)).thenReturn(mockPath);
+        ru.netology.cloudStorage.entity.File file = new ru.netology.cloudStorage.entity.File("test.txt", 12L, "test.txt", testUser);
+        when(fileStorageService.getFile("test.txt", testUser)).thenReturn(file);
+        when(fileStorageService.resolveForRead(file)).thenReturn(mockPath);
+        when(fileStorageService.refreshFile("test.txt", testUser)).thenReturn(file);
+        when(fileStorageService.resolvePath(file)).thenReturn(mockPath);
 
         mockMvc.perform(get("/file")
                         .param("name", "test.txt")
-                        .header("auth-token", "test-token"))
+                        .header("auth-token", "test-token")
+                        .with(user(testUser)))
                 .andExpect(status().isOk());
     }
 
     @Test
-    @WithMockUser(username = "testuser")
+    void testDownloadFileRange() throws Exception {
+        Path tempFile = Files.createTempFile("range", ".txt");
+        Files.writeString(tempFile, "0123456789");
+        ru.netology.cloudStorage.entity.File file = new ru.netology.cloudStorage.entity.File("range.txt", 10L, "range.txt", testUser);
+        when(fileStorageService.getFile(eq("range.txt"), any())).thenReturn(file);
+        when(fileStorageService.resolveForRead(file)).thenReturn(tempFile);
+
+        mockMvc.perform(get("/file")
+                        .param("filename", "range.txt")
+                        .header("auth-token", "test-token")
+                        .with(user(testUser))
+                        .header("Range", "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+
+        Files.deleteIfExists(tempFile);
+    }
+
+    @Test
+    void testLinkFileUnknownBlob() throws Exception {
+        String hash = "a".repeat(64);
+        when(fileStorageService.storeFromBlob(eq("test.txt"), eq(hash), eq(12L), any())).thenReturn(false);
+
+        mockMvc.perform(post("/file/link")
+                        .param("filename", "test.txt")
+                        .param("hash", hash)
+                        .param("size", "12")
+                        .header("auth-token", "test-token")
+                        .with(user(testUser)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
     void testDeleteFile() throws Exception {
         mockMvc.perform(delete("/file")
                         .param("name", "test.txt")
-                        .header("auth-token", "test-token"))
+                        .header("auth-token", "test-token")
+                        .with(user(testUser)))
                 .andExpect(status().isOk());
 
         verify(fileStorageService).delete("test.txt", testUser);
     }
 
     @Test
-    @WithMockUser(username = "testuser")
     void testRenameFile() throws Exception {
         mockMvc.perform(put("/file")
                         .param("name", "old.txt")
                         .header("auth-token", "test-token")
+                        .with(user(testUser))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"name\": \"new.txt\"}"))
                 .andExpect(status().isOk());
@@ -101,14 +171,14 @@ class FileControllerTest {
     }
 
     @Test
-    @WithMockUser(username = "testuser")
     void testListFiles() throws Exception {
         when(fileStorageService.listFiles(testUser, 10))
                 .thenReturn(List.of());
 
         mockMvc.perform(get("/file/list")
                         .param("limit", "10")
-                        .header("auth-token", "test-token"))
+                        .header("auth-token", "test-token")
+                        .with(user(testUser)))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON));
     }
@@ -0,0 +1,26 @@
+package ru.netology.cloudStorage.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileRepositoryImplTest {
+
+    @Test
+    void testLikeWildcardsInQueryMatchLiterally() {
+        assertEquals("%100\\%\\_done%", FileRepositoryImpl.likePattern("100%_done", false));
+        assertEquals("C:\\\\tmp%", FileRepositoryImpl.likePattern("C:\\tmp", true));
+    }
+
+    @Test
+    void testUniqueViolationIsFoundInBatchExceptionChain() {
+        BatchUpdateException batch = new BatchUpdateException("Batch entry 1 was aborted", "08000", new int[0]);
+        batch.setNextException(new SQLException("duplicate key value violates unique constraint", "23505"));
+
+        assertTrue(FileRepositoryImpl.isUniqueViolation(batch));
+        assertFalse(FileRepositoryImpl.isUniqueViolation(new SQLException("deadlock detected", "40P01")));
+    }
+}
@@ -0,0 +1,131 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ArchiveServiceTest {
+
+    @TempDir
+    Path root;
+
+    private StorageProperties properties;
+    private FileStorageService fileStorageService;
+    private ArchiveService archiveService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.resolveForRead(any())).thenAnswer(call -> root.resolve(call.<File>getArgument(0).getFilePath()));
+        archiveService = new ArchiveService(fileStorageService, new BufferPool(properties),
+                new StorageMetrics(new SimpleMeterRegistry(), properties), properties);
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testCompressedTypesAreStoredAndCodecFilesAreDecoded() throws Exception {
+        byte[] photo = new byte[200_000];
+        new Random(1).nextBytes(photo);
+        String text = "line of text\n".repeat(10_000);
+        File jpg = stored("photo.JPG", photo);
+        File txt = stored("notes.txt", text.getBytes(StandardCharsets.UTF_8));
+        File gz = storedGzip("report.csv", text);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = archiveService.write(List.of(jpg, txt, gz), out, user.getLogin());
+
+        Map<String, ZipEntry> entries = new LinkedHashMap<>();
+        Map<String, byte[]> contents = read(out.toByteArray(), entries);
+        assertEquals(out.size(), written);
+        assertEquals(List.of("photo.JPG", "notes.txt", "report.csv"), List.copyOf(entries.keySet()));
+        assertEquals(ZipEntry.STORED, entries.get("photo.JPG").getMethod());
+        assertEquals(ZipEntry.DEFLATED, entries.get("notes.txt").getMethod());
+        assertArrayEquals(photo, contents.get("photo.JPG"));
+        assertEquals(text, new String(contents.get("notes.txt"), StandardCharsets.UTF_8));
+        assertEquals(text, new String(contents.get("report.csv"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testLargeFilesSkipPrefetchAndStillStream() throws Exception {
+        properties.getArchive().setPrefetchMaxBytes(10);
+        String text = "not prefetched ".repeat(1_000);
+        File txt = stored("big.log", text.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.write(List.of(txt), out, user.getLogin());
+
+        Map<String, byte[]> contents = read(out.toByteArray(), new LinkedHashMap<>());
+        assertEquals(text, new String(contents.get("big.log"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMissingFileFailsWithoutWritingCentralDirectory() throws Exception {
+        File present = stored("a.txt", "content".getBytes(StandardCharsets.UTF_8));
+        File missing = new File("gone.txt", 5L, "gone.txt", user);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOException error = assertThrows(IOException.class,
+                () -> archiveService.write(List.of(present, missing), out, user.getLogin()));
+
+        assertTrue(error.getMessage().contains("gone.txt"));
+        // Сигнатура конца центрального каталога не записана
+        byte[] bytes = out.toByteArray();
+        assertFalse(bytes.length >= 22 && bytes[bytes.length - 22] == 0x50 && bytes[bytes.length - 21] == 0x4b
+                && bytes[bytes.length - 20] == 0x05 && bytes[bytes.length - 19] == 0x06);
+    }
+
+    private File stored(String filename, byte[] content) throws IOException {
+        Path path = root.resolve(filename + ".bin");
+        Files.write(path, content);
+        return new File(filename, (long) content.length, path.getFileName().toString(), user);
+    }
+
+    private File storedGzip(String filename, String content) throws IOException {
+        Path path = root.resolve(filename + ".gz");
+        try (OutputStream out = ContentCodec.GZIP.encoder(Files.newOutputStream(path), 6)) {
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        File file = new File(filename, (long) content.length(), path.getFileName().toString(), user);
+        file.setCodec(ContentCodec.GZIP.getEncoding());
+        file.setStoredSize(Files.size(path));
+        return file;
+    }
+
+    private static Map<String, byte[]> read(byte[] archive, Map<String, ZipEntry> entries) throws IOException {
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.put(entry.getName(), entry);
+                contents.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return contents;
+    }
+}
@@ -0,0 +1,154 @@
+package ru.netology.cloudStorage.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.BlobRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BlobServiceTest {
+
+    private static final String DIGEST = "ab".repeat(32);
+
+    @TempDir
+    Path root;
+
+    private BlobRepository blobRepository;
+    private BlobService blobService;
+    private Path blob;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setPath(root.toString());
+        properties.getDedup().setEnabled(true);
+        blobRepository = mock(BlobRepository.class);
+        blobService = new BlobService(blobRepository, properties, new DiskIoLimiter(properties));
+        blobService.init();
+        blob = root.resolve(BlobService.relativePath(DIGEST));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testSecondReferenceKeepsFileAfterOneRelease() throws Exception {
+        when(blobRepository.refCount(DIGEST)).thenReturn(1L, 2L);
+        blobService.commit(temp("content"), DIGEST, 7);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        Path second = temp("content");
+        blobService.commit(second, DIGEST, 7);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertFalse(Files.exists(second));
+        when(blobRepository.deleteUnreferenced(DIGEST)).thenReturn(0);
+        blobService.release(DIGEST);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertEquals("content", Files.readString(blob));
+        verify(blobRepository, times(2)).acquire(DIGEST, 7);
+        verify(blobRepository).release(DIGEST);
+    }
+
+    @Test
+    void testLastReleaseDeletesFileOnlyAfterCommit() throws Exception {
+        storeCommitted();
+        when(blobRepository.deleteUnreferenced(DIGEST)).thenReturn(1);
+
+        blobService.release(DIGEST);
+
+        assertFalse(Files.exists(blob));
+        assertEquals(1, tombstones());
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertFalse(Files.exists(blob));
+        assertEquals(0, tombstones());
+    }
+
+    @Test
+    void testRolledBackReleaseRestoresFile() throws Exception {
+        storeCommitted();
+        when(blobRepository.deleteUnreferenced(DIGEST)).thenReturn(1);
+
+        blobService.release(DIGEST);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals("content", Files.readString(blob));
+        assertEquals(0, tombstones());
+    }
+
+    @Test
+    void testRolledBackUploadRemovesNewBlob() throws Exception {
+        when(blobRepository.refCount(DIGEST)).thenReturn(1L);
+
+        blobService.commit(temp("content"), DIGEST, 7);
+        assertTrue(Files.exists(blob));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertFalse(Files.exists(blob));
+        assertEquals(0, tombstones());
+    }
+
+    @Test
+    void testRollbackCleanupKeepsFileOfNextUpload() throws Exception {
+        when(blobRepository.refCount(DIGEST)).thenReturn(1L);
+        blobService.commit(temp("content"), DIGEST, 7);
+
+        // Следующая загрузка заменила файл, пока откат ещё не добрался до очистки
+        Files.move(temp("content"), blob, StandardCopyOption.ATOMIC_MOVE);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals("content", Files.readString(blob));
+    }
+
+    @Test
+    void testFirstReferenceReplacesLeftoverFile() throws Exception {
+        Files.createDirectories(blob.getParent());
+        Files.writeString(blob, "stale");
+        when(blobRepository.refCount(DIGEST)).thenReturn(1L);
+
+        blobService.commit(temp("content"), DIGEST, 7);
+
+        assertEquals("content", Files.readString(blob));
+    }
+
+    private void storeCommitted() throws Exception {
+        when(blobRepository.refCount(DIGEST)).thenReturn(1L);
+        blobService.commit(temp("content"), DIGEST, 7);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private Path temp(String content) throws Exception {
+        return Files.writeString(blobService.createTempFile(), content);
+    }
+
+    private long tombstones() throws Exception {
+        try (Stream<Path> files = Files.list(root.resolve(".tmp"))) {
+            return files.filter(path -> path.toString().endsWith(".tomb")).count();
+        }
+    }
+
+    private void complete(int status) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        }
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.initSynchronization();
+    }
+}
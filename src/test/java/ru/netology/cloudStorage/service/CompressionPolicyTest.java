@@ -0,0 +1,48 @@
+package ru.netology.cloudStorage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.util.ContentCodec;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPolicyTest {
+
+    private CompressionPolicy policy;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.getCompression().setEnabled(true);
+        properties.getCompression().setMinSize(16);
+        policy = new CompressionPolicy(properties);
+    }
+
+    @Test
+    void testTextIsCompressedByContent() {
+        byte[] text = "timestamp,level,message\n2024-01-01,INFO,started\n".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(ContentCodec.GZIP, policy.choose("export.unknown", text, text.length, true));
+    }
+
+    @Test
+    void testCompressedFormatsAreStoredAsIs() {
+        byte[] gzip = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+        assertNull(policy.choose("data.log", gzip, gzip.length, true));
+        assertNull(policy.choose("photo.jpg", new byte[64], 64, false));
+    }
+
+    @Test
+    void testSmallAndBinaryFilesAreStoredAsIs() {
+        byte[] small = "tiny".getBytes(StandardCharsets.US_ASCII);
+        byte[] binary = new byte[64];
+        binary[10] = 1;
+
+        assertNull(policy.choose("note.txt", small, small.length, true));
+        assertNull(policy.choose("blob.bin", binary, binary.length, true));
+    }
+}
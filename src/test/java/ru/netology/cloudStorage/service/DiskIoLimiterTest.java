@@ -0,0 +1,87 @@
+package ru.netology.cloudStorage.service;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskIoLimiterTest {
+
+    @Test
+    void testPermitIsReturnedAfterFailure() {
+        DiskIoLimiter limiter = new DiskIoLimiter(properties(1, 100));
+
+        assertThrows(IOException.class, () -> limiter.run(() -> {
+            throw new IOException("disk error");
+        }));
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void testBusyLimiterTimesOut() throws Exception {
+        DiskIoLimiter limiter = new DiskIoLimiter(properties(1, 50));
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = Thread.ofVirtual().start(() -> {
+            try {
+                limiter.run(() -> {
+                    holding.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        holding.await();
+
+        IOException e = assertThrows(IOException.class, () -> limiter.run(() -> { }));
+        assertTrue(e.getMessage().contains("busy"));
+
+        release.countDown();
+        holder.join();
+        assertEquals(1, limiter.availablePermits());
+    }
+
+    @Test
+    void testConcurrencyNeverExceedsPermits() throws Exception {
+        DiskIoLimiter limiter = new DiskIoLimiter(properties(3, 5_000));
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        Thread[] threads = new Thread[50];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = Thread.ofVirtual().start(() -> {
+                try {
+                    limiter.run(() -> {
+                        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        active.decrementAndGet();
+                    });
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(peak.get() <= 3);
+    }
+
+    private static StorageProperties properties(int permits, long timeoutMs) {
+        StorageProperties properties = new StorageProperties();
+        properties.getConcurrency().setDiskPermits(permits);
+        properties.getConcurrency().setDiskAcquireTimeoutMs(timeoutMs);
+        return properties;
+    }
+}
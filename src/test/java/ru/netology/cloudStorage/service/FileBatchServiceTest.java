@@ -0,0 +1,194 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.DTO.BatchItemResult;
+import ru.netology.cloudStorage.DTO.BatchRequest;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+import ru.netology.cloudStorage.repository.FileRepositoryCustom;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FileBatchServiceTest {
+
+    @TempDir
+    Path root;
+
+    private StorageProperties properties;
+    private FileRepository fileRepository;
+    private FileStorageService fileStorageService;
+    private BlobService blobService;
+    private QuotaService quotaService;
+    private FileListVersions fileListVersions;
+    private FileBatchService batchService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setPath(root.toString());
+        fileRepository = mock(FileRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        doCallRealMethod().when(fileStorageService).validateFilename(any());
+        when(fileStorageService.resolvePath(any())).thenAnswer(call -> root.resolve(call.<File>getArgument(0).getFilePath()));
+        blobService = mock(BlobService.class);
+        quotaService = mock(QuotaService.class);
+        fileListVersions = mock(FileListVersions.class);
+        batchService = new FileBatchService(fileRepository, fileStorageService, blobService,
+                new DiskIoLimiter(properties), new FileMetadataCache(properties, new SimpleMeterRegistry()), event -> { }, quotaService, fileListVersions, properties);
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testDeletesAndRenamesUseOneLookupAndReportEachItem() throws Exception {
+        File a = stored(1L, "a.txt");
+        File b = stored(2L, "b.txt");
+        File c = stored(3L, "c.txt");
+        File shared = file(4L, "shared.bin", "blobs/ab/cd");
+        shared.setBlobDigest("abcd");
+        when(fileRepository.findByUserAndFilenameIn(eq(user), anyCollection())).thenReturn(List.of(a, b, c, shared));
+        when(fileRepository.deleteAllOwned(eq(1L), anyCollection())).thenReturn(Set.of(1L, 4L));
+        when(fileRepository.renameAllOwned(eq(1L), anyList())).thenReturn(List.of(FileRepositoryCustom.RenameOutcome.RENAMED));
+
+        BatchRequest request = new BatchRequest(
+                new ArrayList<>(List.of("a.txt", "missing.txt", "shared.bin")),
+                new ArrayList<>(List.of(
+                        new BatchRequest.Rename("b.txt", "a.txt"),
+                        new BatchRequest.Rename("c.txt", "b.txt"),
+                        new BatchRequest.Rename("a.txt", "d.txt"),
+                        new BatchRequest.Rename("c.txt", "../etc"))));
+        List<BatchItemResult> results = batchService.apply(request, user);
+
+        assertEquals(List.of(200, 404, 200, 200, 409, 404, 400),
+                results.stream().map(BatchItemResult::getStatus).toList());
+        // Сущности не меняются: имя пишет только условный UPDATE
+        assertEquals("b.txt", b.getFilename());
+        assertEquals("c.txt", c.getFilename());
+        verify(fileRepository, times(1)).findByUserAndFilenameIn(eq(user), anyCollection());
+        verify(fileRepository).deleteAllOwned(1L, Set.of(1L, 4L));
+        verify(fileRepository).renameAllOwned(1L, List.of(new FileRepositoryCustom.Rename(2L, "b.txt", "a.txt")));
+        verify(fileRepository, never()).flush();
+        verify(blobService).release("abcd");
+        verify(quotaService).release(1L, a.getSize() + shared.getSize(), 2);
+        verify(fileListVersions, times(1)).bump(1L);
+        assertFalse(Files.exists(root.resolve(a.getFilePath())));
+        assertTrue(Files.exists(root.resolve(b.getFilePath())));
+    }
+
+    @Test
+    void testRenameOfConcurrentlyChangedRowIsNotFound() throws Exception {
+        File a = stored(1L, "a.txt");
+        File b = stored(2L, "b.txt");
+        when(fileRepository.findByUserAndFilenameIn(eq(user), anyCollection())).thenReturn(List.of(a, b));
+        // Строку b.txt после чтения переименовали или удалили в другой транзакции
+        when(fileRepository.renameAllOwned(eq(1L), anyList())).thenReturn(List.of(
+                FileRepositoryCustom.RenameOutcome.RENAMED, FileRepositoryCustom.RenameOutcome.NOT_FOUND));
+
+        BatchRequest request = new BatchRequest(null, new ArrayList<>(List.of(
+                new BatchRequest.Rename("a.txt", "x.txt"),
+                new BatchRequest.Rename("b.txt", "y.txt"))));
+        List<BatchItemResult> results = batchService.apply(request, user);
+
+        assertEquals(List.of(200, 404), results.stream().map(BatchItemResult::getStatus).toList());
+        assertEquals("y.txt", results.get(1).getName());
+        verify(fileListVersions).bump(1L);
+    }
+
+    @Test
+    void testNameTakenByConcurrentUploadFailsOnlyThatRename() throws Exception {
+        File a = stored(1L, "a.txt");
+        File b = stored(2L, "b.txt");
+        File shared = file(3L, "shared.bin", "blobs/ab/cd");
+        shared.setBlobDigest("abcd");
+        when(fileRepository.findByUserAndFilenameIn(eq(user), anyCollection())).thenReturn(List.of(a, b, shared));
+        when(fileRepository.deleteAllOwned(eq(1L), anyCollection())).thenReturn(Set.of(3L));
+        // y.txt загрузили после чтения пакета
+        when(fileRepository.renameAllOwned(eq(1L), anyList())).thenReturn(List.of(
+                FileRepositoryCustom.RenameOutcome.RENAMED, FileRepositoryCustom.RenameOutcome.NAME_TAKEN));
+
+        BatchRequest request = new BatchRequest(new ArrayList<>(List.of("shared.bin")), new ArrayList<>(List.of(
+                new BatchRequest.Rename("a.txt", "x.txt"),
+                new BatchRequest.Rename("b.txt", "y.txt"))));
+        List<BatchItemResult> results = batchService.apply(request, user);
+
+        assertEquals(List.of(200, 200, 409), results.stream().map(BatchItemResult::getStatus).toList());
+        var order = inOrder(fileRepository, blobService);
+        order.verify(fileRepository).renameAllOwned(eq(1L), anyList());
+        order.verify(blobService).release("abcd");
+    }
+
+    @Test
+    void testConcurrentlyDeletedRowIsNotReleasedTwice() throws Exception {
+        File a = stored(1L, "a.txt");
+        File shared = file(2L, "shared.bin", "blobs/ab/cd");
+        shared.setBlobDigest("abcd");
+        when(fileRepository.findByUserAndFilenameIn(eq(user), anyCollection())).thenReturn(List.of(a, shared));
+        // shared.bin удалил параллельный DELETE /file между чтением и удалением пакета
+        when(fileRepository.deleteAllOwned(eq(1L), anyCollection())).thenReturn(Set.of(1L));
+
+        List<BatchItemResult> results = batchService.apply(
+                new BatchRequest(new ArrayList<>(List.of("a.txt", "shared.bin")), null), user);
+
+        assertEquals(List.of(200, 404), results.stream().map(BatchItemResult::getStatus).toList());
+        verify(blobService, never()).release(any());
+        verify(quotaService).release(1L, a.getSize(), 1);
+        assertFalse(Files.exists(root.resolve(a.getFilePath())));
+    }
+
+    @Test
+    void testTooLargeBatchIsRejectedBeforeLookup() {
+        properties.getBatch().setMaxItems(2);
+        batchService = new FileBatchService(fileRepository, fileStorageService, blobService,
+                new DiskIoLimiter(properties), new FileMetadataCache(properties, new SimpleMeterRegistry()), event -> { }, quotaService, fileListVersions, properties);
+
+        BatchRequest request = new BatchRequest(List.of("a", "b", "c"), null);
+
+        assertThrows(IllegalArgumentException.class, () -> batchService.apply(request, user));
+        verify(fileRepository, never()).findByUserAndFilenameIn(any(), anyCollection());
+    }
+
+    @Test
+    void testParallelUnlinkRemovesEveryFile() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Path path = root.resolve("file-" + i);
+            Files.writeString(path, "x");
+            paths.add(path);
+        }
+
+        batchService.unlinkAll(paths);
+
+        try (var left = Files.list(root)) {
+            assertEquals(0, left.count());
+        }
+    }
+
+    private File stored(Long id, String filename) throws Exception {
+        File file = file(id, filename, "uuid-" + id + ".txt");
+        Files.writeString(root.resolve(file.getFilePath()), filename);
+        return file;
+    }
+
+    private File file(Long id, String filename, String path) {
+        File file = new File(filename, 10L, path, user);
+        file.setId(id);
+        return file;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDownloadServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FileDownloadService downloadService;
+    private SimpleMeterRegistry meterRegistry;
+    private File file;
+    private Path path;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        StorageProperties properties = new StorageProperties();
+        downloadService = new FileDownloadService(properties, new StorageMetrics(meterRegistry, properties),
+                new TransferThrottle(properties, meterRegistry));
+        path = tempDir.resolve("data.txt");
+        Files.writeString(path, "0123456789");
+        file = new File("data.txt", 10L, "data.txt", new User());
+    }
+
+    @Test
+    void testFullDownload() throws Exception {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest("GET", "/file"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void testDownloadIsMetered() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.setAttribute(StorageMetrics.USER_ATTRIBUTE, "user1");
+
+        serve(request);
+
+        // Логин не попадает в тег, пока user-tag не включён явно
+        assertEquals(10.0, meterRegistry.get("storage.transfer.bytes")
+                .tag("direction", StorageMetrics.DOWNLOAD)
+                .tag("user", "unknown")
+                .counter().count());
+        assertEquals(0.0, meterRegistry.get("storage.transfers.active")
+                .tag("direction", StorageMetrics.DOWNLOAD)
+                .gauge().value());
+    }
+
+    @Test
+    void testDownloadIsMeteredPerUserWhenEnabled() throws Exception {
+        StorageProperties properties = new StorageProperties();
+        properties.getMetrics().setUserTag(true);
+        downloadService = new FileDownloadService(properties, new StorageMetrics(meterRegistry, properties),
+                new TransferThrottle(properties, meterRegistry));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.setAttribute(StorageMetrics.USER_ATTRIBUTE, "user1");
+
+        serve(request);
+
+        assertEquals(10.0, meterRegistry.get("storage.transfer.bytes")
+                .tag("direction", StorageMetrics.DOWNLOAD)
+                .tag("user", "user1")
+                .counter().count());
+    }
+
+    @Test
+    void testMultiRangeDownload() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=0-1,8-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges"));
+        String body = response.getContentAsString();
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89\r\n"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=50-");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    void testIfNoneMatchReturnsNotModified() throws Exception {
+        String etag = serve(new MockHttpServletRequest("GET", "/file")).getHeader("ETag");
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("If-None-Match", etag);
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void testStaleIfRangeServesWholeFile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Range", "bytes=2-3");
+        request.addHeader("If-Range", "\"stale\"");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void testCompressedFileIsPassedThroughWhenAccepted() throws Exception {
+        byte[] stored = compressedFile();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Accept-Encoding", "br, gzip;q=0.8");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals(stored.length, response.getContentLengthLong());
+        assertArrayEquals(stored, response.getContentAsByteArray());
+    }
+
+    @Test
+    void testCompressedFileIsDecodedWhenNotAccepted() throws Exception {
+        compressedFile();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file");
+        request.addHeader("Accept-Encoding", "gzip;q=0");
+        request.addHeader("Range", "bytes=0-1");
+
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("none", response.getHeader("Accept-Ranges"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    private byte[] compressedFile() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+        }
+        byte[] stored = bytes.toByteArray();
+        Files.write(path, stored);
+        file.setCodec("gzip");
+        file.setStoredSize((long) stored.length);
+        return stored;
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.serve(request, response, file, path);
+        return response;
+    }
+}
@@ -0,0 +1,119 @@
+package ru.netology.cloudStorage.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.DTO.FileInfoResponse;
+import ru.netology.cloudStorage.DTO.FileListPage;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.util.FileSortKey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class FileListCacheTest {
+
+    private StorageProperties properties;
+    private FileStorageService fileStorageService;
+    private FileListVersions fileListVersions;
+    private FileListCache cache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        fileStorageService = mock(FileStorageService.class);
+        fileListVersions = mock(FileListVersions.class);
+        when(fileStorageService.listFiles(any(), anyInt(), any(), any(), any()))
+                .thenReturn(new FileListPage(List.of(new FileInfoResponse("a.txt", 3L)), "next"));
+        cache = cache();
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testMatchingEtagSkipsListing() {
+        when(fileListVersions.current(1L)).thenReturn(5L);
+        FileListCache.Listing first = cache.list(user, 10, FileSortKey.DATE, null, null, null);
+
+        FileListCache.Listing second = cache.list(user, 10, FileSortKey.DATE, null, null, first.etag());
+
+        assertTrue(second.notModified());
+        assertEquals(first.etag(), second.etag());
+        assertTrue(first.etag().startsWith("W/\"5-"));
+        verify(fileStorageService, times(1)).listFiles(any(), anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void testRepeatedRequestIsServedFromCacheUntilVersionChanges() {
+        when(fileListVersions.current(1L)).thenReturn(1L);
+        FileListCache.Listing first = cache.list(user, 10, FileSortKey.NAME, false, null, null);
+        FileListCache.Listing cached = cache.list(user, 10, FileSortKey.NAME, false, null, "W/\"0-stale\"");
+
+        assertEquals("[{\"filename\":\"a.txt\",\"size\":3}]", new String(first.body(), StandardCharsets.UTF_8));
+        assertSame(first.body(), cached.body());
+        assertEquals("next", cached.nextCursor());
+        verify(fileStorageService, times(1)).listFiles(user, 10, FileSortKey.NAME, false, null);
+
+        when(fileListVersions.current(1L)).thenReturn(2L);
+        FileListCache.Listing changed = cache.list(user, 10, FileSortKey.NAME, false, null, first.etag());
+
+        assertFalse(changed.notModified());
+        assertNotEquals(first.etag(), changed.etag());
+        verify(fileStorageService, times(2)).listFiles(user, 10, FileSortKey.NAME, false, null);
+    }
+
+    @Test
+    void testEtagDependsOnParametersAndUser() {
+        when(fileListVersions.current(any())).thenReturn(1L);
+        User other = new User();
+        other.setId(2L);
+
+        String etag = cache.list(user, 10, FileSortKey.DATE, null, null, null).etag();
+
+        assertNotEquals(etag, cache.list(user, 20, FileSortKey.DATE, null, null, null).etag());
+        assertNotEquals(etag, cache.list(user, 10, FileSortKey.DATE, true, null, null).etag());
+        assertNotEquals(etag, cache.list(user, 10, FileSortKey.DATE, null, "cursor", null).etag());
+        assertFalse(cache.list(other, 10, FileSortKey.DATE, null, null, etag).notModified());
+    }
+
+    @Test
+    void testDisabledCacheStillAnswersNotModified() {
+        properties.getListCache().setEnabled(false);
+        cache = cache();
+        when(fileListVersions.current(1L)).thenReturn(3L);
+
+        String etag = cache.list(user, 10, FileSortKey.DATE, null, null, null).etag();
+        cache.list(user, 10, FileSortKey.DATE, null, null, null);
+
+        assertTrue(cache.list(user, 10, FileSortKey.DATE, null, null, etag).notModified());
+        verify(fileStorageService, times(2)).listFiles(eq(user), eq(10), any(), any(), any());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testIfNoneMatchParsing() {
+        String etag = "W/\"7-0011223344556677\"";
+
+        assertTrue(FileListCache.matches(etag, etag));
+        assertTrue(FileListCache.matches("\"7-0011223344556677\"", etag));
+        assertTrue(FileListCache.matches("\"x\", W/\"7-0011223344556677\"", etag));
+        assertTrue(FileListCache.matches("*", etag));
+        assertFalse(FileListCache.matches("W/\"8-0011223344556677\"", etag));
+        assertFalse(FileListCache.matches(null, etag));
+    }
+
+    private FileListCache cache() {
+        return new FileListCache(fileStorageService, fileListVersions, new ObjectMapper(), properties,
+                new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,95 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMetadataCacheTest {
+
+    private StorageProperties properties;
+    private FileMetadataCache cache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        cache = new FileMetadataCache(properties, new SimpleMeterRegistry());
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testRepeatedLookupsLoadOnce() {
+        AtomicInteger loads = new AtomicInteger();
+        File stored = file("report.pdf");
+
+        for (int i = 0; i < 3; i++) {
+            Optional<File> found = cache.get(user, "report.pdf", () -> {
+                loads.incrementAndGet();
+                return Optional.of(stored);
+            });
+            assertEquals("ab/cd/report.pdf", found.orElseThrow().getFilePath());
+            found.get().setFilename("changed");
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.stats().hitCount());
+        assertTrue(cache.contains(user, "report.pdf"));
+    }
+
+    @Test
+    void testPutIsDroppedOnRollbackAndEvictionIsImmediate() {
+        cache.put(file("kept.txt"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.put(file("rolled-back.txt"));
+            cache.evict(1L, "kept.txt");
+            assertFalse(cache.contains(user, "kept.txt"));
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertFalse(cache.contains(user, "rolled-back.txt"));
+        assertFalse(cache.contains(user, "kept.txt"));
+    }
+
+    @Test
+    void testEvictionIsBoundedByEstimatedMemory() throws InterruptedException {
+        properties.getFileCache().setMaxWeightBytes(4 * 1024);
+        cache = new FileMetadataCache(properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(file("file-" + i + ".bin"));
+        }
+        // Вытеснение выполняется асинхронно после записи
+        for (int i = 0; i < 100 && cache.stats().evictionCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertTrue(cache.stats().evictionCount() > 0);
+        assertTrue(cache.size() < 100);
+    }
+
+    private File file(String filename) {
+        File file = new File(filename, 10L, "ab/cd/" + filename, user);
+        file.setId((long) filename.hashCode());
+        return file;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.exception.QuotaExceededException;
+import ru.netology.cloudStorage.repository.BlobRepository;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FileStorageServiceTest {
+
+    @TempDir
+    Path root;
+
+    private StorageProperties properties;
+    private FileRepository fileRepository;
+    private BlobRepository blobRepository;
+    private QuotaService quotaService;
+    private FileStorageService service;
+    private Path assembled;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new StorageProperties();
+        properties.setPath(root.toString());
+        fileRepository = mock(FileRepository.class);
+        blobRepository = mock(BlobRepository.class);
+        quotaService = mock(QuotaService.class);
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+        assembled = Files.createDirectories(root.resolve("sessions")).resolve("s1.data");
+        Files.writeString(assembled, "assembled content");
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testQuotaIsChargedBeforeContentLeavesSession() {
+        service = service();
+        doThrow(new QuotaExceededException("Storage quota exceeded")).when(quotaService).charge(any(), anyLong());
+
+        assertThrows(QuotaExceededException.class, () -> service.storeAssembled(assembled, "big.bin", user));
+
+        assertTrue(Files.exists(assembled));
+        verify(fileRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void testRollbackReturnsMovedContentToSession() throws Exception {
+        service = service();
+
+        File file = service.storeAssembled(assembled, "doc.txt", user);
+        Path stored = service.resolvePath(file);
+        assertFalse(Files.exists(assembled));
+        assertTrue(Files.exists(stored));
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals("assembled content", Files.readString(assembled));
+        assertFalse(Files.exists(stored));
+    }
+
+    @Test
+    void testBlobCommitKeepsSessionDataUntilTransactionCommits() throws Exception {
+        properties.getDedup().setEnabled(true);
+        service = service();
+
+        File file = service.storeAssembled(assembled, "doc.txt", user);
+        assertTrue(Files.exists(assembled));
+        assertEquals("assembled content", Files.readString(service.resolvePath(file)));
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertFalse(Files.exists(assembled));
+    }
+
+    @Test
+    void testBlobRollbackLeavesSessionDataInPlace() throws Exception {
+        properties.getDedup().setEnabled(true);
+        service = service();
+        when(fileRepository.saveAndFlush(any())).thenThrow(new IllegalStateException("duplicate name"));
+
+        assertThrows(IllegalStateException.class, () -> service.storeAssembled(assembled, "doc.txt", user));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertEquals("assembled content", Files.readString(assembled));
+    }
+
+    @Test
+    void testLinkRequiresOwnCopyOfContent() {
+        properties.getDedup().setEnabled(true);
+        service = service();
+        String digest = "ab".repeat(32);
+
+        assertFalse(service.hasBlob(digest, user));
+        assertFalse(service.storeFromBlob("copy.txt", digest, 17, user));
+        verify(fileRepository, never()).save(any());
+
+        when(fileRepository.existsByUserAndBlobDigest(user, digest)).thenReturn(true);
+        when(blobRepository.acquireExisting(digest, 17)).thenReturn(1);
+
+        assertTrue(service.hasBlob(digest, user));
+        assertTrue(service.storeFromBlob("copy.txt", digest, 17, user));
+        verify(fileRepository).save(any());
+    }
+
+    private void complete(int status) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        }
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, status);
+    }
+
+    private FileStorageService service() {
+        DiskIoLimiter diskIoLimiter = new DiskIoLimiter(properties);
+        BlobService blobService = new BlobService(blobRepository, properties, diskIoLimiter);
+        blobService.init();
+        FileStorageService fileStorageService = new FileStorageService(fileRepository, properties,
+                new BufferPool(properties), blobService, diskIoLimiter,
+                new StorageMetrics(new SimpleMeterRegistry(), properties), new CompressionPolicy(properties),
+                new StorageLayout(properties), new AccessTracker(fileRepository, properties),
+                new FileMetadataCache(properties, new SimpleMeterRegistry()), event -> { }, quotaService,
+                new TransferThrottle(properties, new SimpleMeterRegistry()), mock(FileListVersions.class));
+        fileStorageService.init();
+        return fileStorageService;
+    }
+}
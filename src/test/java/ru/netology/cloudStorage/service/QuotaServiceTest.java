@@ -0,0 +1,119 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionOperations;
+import ru.netology.cloudStorage.DTO.UsageResponse;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.entity.UserUsage;
+import ru.netology.cloudStorage.exception.QuotaExceededException;
+import ru.netology.cloudStorage.repository.UserRepository;
+import ru.netology.cloudStorage.repository.UserUsageRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class QuotaServiceTest {
+
+    private StorageProperties properties;
+    private UserUsageRepository usageRepository;
+    private UserRepository userRepository;
+    private SimpleMeterRegistry registry;
+    private QuotaService quotaService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.getQuota().setEnabled(true);
+        properties.getQuota().setDefaultBytes(100);
+        usageRepository = mock(UserUsageRepository.class);
+        userRepository = mock(UserRepository.class);
+        registry = new SimpleMeterRegistry();
+        quotaService = new QuotaService(usageRepository, userRepository,
+                TransactionOperations.withoutTransaction(), properties, registry);
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testChargeIsConditionalOnQuota() {
+        when(usageRepository.charge(1L, 40, 1, 100)).thenReturn(1);
+        when(usageRepository.charge(1L, 80, 1, 100)).thenReturn(0);
+        when(usageRepository.findById(1L)).thenReturn(Optional.of(usage(40L, null)));
+
+        quotaService.charge(user, 40);
+        QuotaExceededException e = assertThrows(QuotaExceededException.class, () -> quotaService.charge(user, 80));
+
+        assertTrue(e.getMessage().contains("60 bytes available"));
+        verify(usageRepository, times(2)).ensure(1L);
+        verify(usageRepository, never()).add(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void testDisabledQuotaStillCountsUsage() throws Exception {
+        properties.getQuota().setEnabled(false);
+        InputStream in = new ByteArrayInputStream(new byte[500]);
+
+        assertSame(in, quotaService.limit(in, user));
+        quotaService.charge(user, 500);
+        quotaService.release(1L, 500, 1);
+
+        verify(usageRepository).add(1L, 500, 1);
+        verify(usageRepository).add(1L, -500, -1);
+        verify(usageRepository, never()).charge(anyLong(), anyLong(), anyLong(), anyLong());
+        when(usageRepository.findById(1L)).thenReturn(Optional.of(usage(0L, null)));
+        assertNull(quotaService.usage(user).getQuotaBytes());
+    }
+
+    @Test
+    void testStreamIsCutAtRemainingQuota() throws Exception {
+        when(usageRepository.findById(1L)).thenReturn(Optional.of(usage(70L, 110L)));
+
+        assertEquals(new UsageResponse(70, 1, 110L, 40L), quotaService.usage(user));
+        try (InputStream in = quotaService.limit(new ByteArrayInputStream(new byte[41]), user)) {
+            assertEquals(40, in.readNBytes(40).length);
+            assertThrows(QuotaExceededException.class, in::read);
+        }
+        try (InputStream in = quotaService.limit(new ByteArrayInputStream(new byte[40]), user)) {
+            assertEquals(40, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void testReconcileWalksUsersInChunks() {
+        properties.getQuota().setReconcileChunkSize(2);
+        when(userRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L));
+        when(userRepository.findIdsAfter(eq(2L), any())).thenReturn(List.of(5L));
+        when(usageRepository.reconcile(List.of(1L, 2L))).thenReturn(1);
+        when(usageRepository.reconcile(List.of(5L))).thenReturn(0);
+
+        assertEquals(1, quotaService.reconcile());
+
+        verify(userRepository, times(2)).findIdsAfter(any(), eq(Limit.of(2)));
+        verify(usageRepository).lockAll(List.of(1L, 2L));
+        verify(usageRepository).lockAll(List.of(5L));
+        assertEquals(1.0, registry.get("storage.quota.reconciled").counter().count());
+    }
+
+    private UserUsage usage(Long used, Long quota) {
+        UserUsage usage = new UserUsage();
+        usage.setUserId(1L);
+        usage.setUsedBytes(used);
+        usage.setFileCount(1L);
+        usage.setQuotaBytes(quota);
+        return usage;
+    }
+}
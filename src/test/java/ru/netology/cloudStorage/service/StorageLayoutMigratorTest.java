@@ -0,0 +1,80 @@
+package ru.netology.cloudStorage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StorageLayoutMigratorTest {
+
+    private static final String NAME = "3f2a9c10-7b6e-4d2a-9f51-0c1b2d3e4f50.log";
+
+    @TempDir
+    Path root;
+
+    private FileRepository fileRepository;
+    private StorageLayout storageLayout;
+    private StorageLayoutMigrator migrator;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setPath(root.toString());
+        fileRepository = mock(FileRepository.class);
+        storageLayout = new StorageLayout(properties);
+        migrator = new StorageLayoutMigrator(fileRepository, storageLayout, properties, new DiskIoLimiter(properties));
+    }
+
+    @Test
+    void testLayoutIsDerivedFromStoredName() {
+        assertEquals("3f/2a/" + NAME, storageLayout.place(NAME));
+        assertTrue(StorageLayout.isFlat(NAME));
+        assertFalse(StorageLayout.isFlat(storageLayout.place(NAME)));
+    }
+
+    @Test
+    void testFlatFilesAreMovedInBatches() throws Exception {
+        Files.writeString(root.resolve(NAME), "content");
+        File file = new File("app.log", 7L, NAME, null);
+        file.setId(1L);
+        when(fileRepository.findFlatAfter(eq(0L), any())).thenReturn(List.of(file));
+        when(fileRepository.findFlatAfter(eq(1L), any())).thenReturn(List.of());
+        when(fileRepository.updateFilePath(1L, NAME, "3f/2a/" + NAME)).thenReturn(1);
+
+        assertEquals(1, migrator.migrate());
+        assertFalse(Files.exists(root.resolve(NAME)));
+        assertEquals("content", Files.readString(root.resolve("3f/2a/" + NAME)));
+    }
+
+    @Test
+    void testInterruptedMoveIsCompletedOnNextRun() throws Exception {
+        Files.createDirectories(root.resolve("3f/2a"));
+        Files.writeString(root.resolve("3f/2a/" + NAME), "content");
+        when(fileRepository.updateFilePath(1L, NAME, "3f/2a/" + NAME)).thenReturn(1);
+
+        assertTrue(migrator.migrateFile(root, 1L, NAME));
+        verify(fileRepository).updateFilePath(1L, NAME, "3f/2a/" + NAME);
+    }
+
+    @Test
+    void testFileDeletedDuringMoveIsRemoved() throws Exception {
+        Files.writeString(root.resolve(NAME), "content");
+        when(fileRepository.updateFilePath(anyLong(), any(), any())).thenReturn(0);
+        when(fileRepository.existsById(1L)).thenReturn(false);
+
+        assertFalse(migrator.migrateFile(root, 1L, NAME));
+        assertFalse(Files.exists(root.resolve("3f/2a/" + NAME)));
+    }
+}
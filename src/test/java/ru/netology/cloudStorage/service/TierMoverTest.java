@@ -0,0 +1,111 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.StorageTier;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TierMoverTest {
+
+    private static final String NAME = "3f2a9c10-7b6e-4d2a-9f51-0c1b2d3e4f50.bin";
+    private static final String SHARDED = "3f/2a/" + NAME;
+
+    @TempDir
+    Path root;
+
+    @TempDir
+    Path fast;
+
+    private StorageProperties properties;
+    private FileRepository fileRepository;
+    private FileStorageService fileStorageService;
+    private TierMover mover;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.setPath(root.toString());
+        properties.getTiering().setEnabled(true);
+        properties.getTiering().setFastPath(fast.toString());
+        fileRepository = mock(FileRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.tierRoot(StorageTier.CAPACITY)).thenReturn(root);
+        when(fileStorageService.tierRoot(StorageTier.FAST)).thenReturn(fast);
+        DiskIoLimiter diskIoLimiter = new DiskIoLimiter(properties);
+        mover = new TierMover(fileRepository, fileStorageService, new StorageLayout(properties), properties,
+                new BufferPool(properties), diskIoLimiter,
+                new FileMetadataCache(properties, new SimpleMeterRegistry()), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testHotFileIsPromotedWithinFastCapacity() throws Exception {
+        Files.writeString(root.resolve(NAME), "hot content");
+        File hot = file(1L, NAME, 11L);
+        File tooBig = file(2L, "other.bin", 1_000L);
+        properties.getTiering().setFastMaxBytes(100);
+        when(fileRepository.sumStoredSize(StorageTier.FAST)).thenReturn(50L);
+        when(fileRepository.findHot(eq(StorageTier.CAPACITY), anyLong(), any())).thenReturn(List.of(tooBig, hot));
+        when(fileStorageService.resolvePath(hot)).thenReturn(root.resolve(NAME));
+        when(fileRepository.moveTier(1L, StorageTier.CAPACITY, NAME, StorageTier.FAST, SHARDED)).thenReturn(1);
+
+        assertEquals(1, mover.promote());
+        assertEquals("hot content", Files.readString(fast.resolve(SHARDED)));
+        assertFalse(Files.exists(root.resolve(NAME)));
+        verify(fileRepository, never()).moveTier(eq(2L), any(), any(), any(), any());
+    }
+
+    @Test
+    void testCopyIsRemovedWhenFileChangedDuringMove() throws Exception {
+        Path source = fast.resolve(SHARDED);
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "cold content");
+        File cold = file(1L, SHARDED, 12L);
+        cold.setTier(StorageTier.FAST);
+        when(fileRepository.findCold(eq(StorageTier.FAST), any(), any())).thenReturn(List.of(cold));
+        when(fileStorageService.resolvePath(cold)).thenReturn(source);
+        when(fileRepository.moveTier(1L, StorageTier.FAST, SHARDED, StorageTier.CAPACITY, SHARDED)).thenReturn(0);
+
+        assertEquals(0, mover.demote());
+        assertTrue(Files.exists(source));
+        assertFalse(Files.exists(root.resolve(SHARDED)));
+        assertFalse(Files.exists(root.resolve(SHARDED + ".moving")));
+    }
+
+    @Test
+    void testAccessesAreFlushedInOneUpdatePerFile() {
+        AccessTracker tracker = new AccessTracker(fileRepository, properties);
+        tracker.record(1L);
+        tracker.record(1L);
+        tracker.record(2L);
+
+        tracker.flush();
+        tracker.flush();
+
+        verify(fileRepository).recordAccess(eq(1L), eq(2L), any());
+        verify(fileRepository).recordAccess(eq(2L), eq(1L), any());
+        verifyNoMoreInteractions(fileRepository);
+    }
+
+    private static File file(Long id, String path, long size) {
+        User user = new User();
+        user.setId(1L);
+        File file = new File("file-" + id, size, path, user);
+        file.setId(id);
+        return file;
+    }
+}
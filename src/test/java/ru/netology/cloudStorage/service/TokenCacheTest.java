@@ -0,0 +1,58 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.User;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCacheTest {
+
+    private TokenCache tokenCache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tokenCache = new TokenCache(new StorageProperties(), new SimpleMeterRegistry());
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+    }
+
+    @Test
+    void testHitAndMissAreCounted() {
+        tokenCache.put("token", user, LocalDateTime.now().plusHours(1));
+
+        assertTrue(tokenCache.get("token").isPresent());
+        assertTrue(tokenCache.get("other").isEmpty());
+        assertEquals(1, tokenCache.stats().hitCount());
+        assertEquals(1, tokenCache.stats().missCount());
+    }
+
+    @Test
+    void testEntryDoesNotOutliveToken() {
+        tokenCache.put("expired", user, LocalDateTime.now().minusSeconds(1));
+
+        assertTrue(tokenCache.get("expired").isEmpty());
+    }
+
+    @Test
+    void testEvictUserRemovesAllTokensOfUser() {
+        User other = new User();
+        other.setId(2L);
+        tokenCache.put("first", user, LocalDateTime.now().plusHours(1));
+        tokenCache.put("second", user, LocalDateTime.now().plusHours(1));
+        tokenCache.put("foreign", other, LocalDateTime.now().plusHours(1));
+
+        tokenCache.evictUser(1L);
+
+        assertTrue(tokenCache.get("first").isEmpty());
+        assertTrue(tokenCache.get("second").isEmpty());
+        assertTrue(tokenCache.get("foreign").isPresent());
+        assertEquals(2, tokenCache.invalidationCount());
+    }
+}
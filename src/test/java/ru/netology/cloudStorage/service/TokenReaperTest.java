@@ -0,0 +1,66 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.repository.AuthTokenRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TokenReaperTest {
+
+    private AuthTokenRepository tokenRepository;
+    private TokenCache tokenCache;
+    private SimpleMeterRegistry meterRegistry;
+    private TokenReaper tokenReaper;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.getToken().getReaper().setChunkSize(2);
+        properties.getToken().getReaper().setChunkPauseMs(0);
+        tokenRepository = mock(AuthTokenRepository.class);
+        tokenCache = mock(TokenCache.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tokenReaper = new TokenReaper(tokenRepository, tokenCache, properties, meterRegistry);
+    }
+
+    @Test
+    void testExpiredTokensAreDeletedInChunks() {
+        when(tokenRepository.deleteExpiredChunk(any(), eq(2))).thenReturn(2, 2, 1);
+
+        assertEquals(5, tokenReaper.deleteExpired());
+        verify(tokenRepository, times(3)).deleteExpiredChunk(any(), eq(2));
+    }
+
+    @Test
+    void testExcessTokensAreEvictedFromCache() {
+        when(tokenRepository.deleteExcessChunk(5, 2)).thenReturn(List.of("a", "b"), List.of("c"));
+
+        assertEquals(3, tokenReaper.trimExcess());
+        verify(tokenCache).evict("a");
+        verify(tokenCache).evict("b");
+        verify(tokenCache).evict("c");
+    }
+
+    @Test
+    void testRunRecordsRemovedRows() {
+        when(tokenRepository.deleteExpiredChunk(any(), anyInt())).thenReturn(1);
+        when(tokenRepository.deleteExcessChunk(anyInt(), anyInt())).thenReturn(List.of());
+
+        tokenReaper.reap();
+
+        assertEquals(1.0, meterRegistry.get("auth.token.reaper.removed")
+                .tag("reason", TokenReaper.EXPIRED).summary().totalAmount());
+        assertEquals(0.0, meterRegistry.get("auth.token.reaper.removed")
+                .tag("reason", TokenReaper.EXCESS).summary().totalAmount());
+        verify(tokenCache).evictExpired();
+    }
+}
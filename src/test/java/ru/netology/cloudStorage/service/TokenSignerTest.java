@@ -0,0 +1,93 @@
+package ru.netology.cloudStorage.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.TokenRevocation;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.TokenRevocationRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenSignerTest {
+
+    private static final String OLD_KEY = "old-secret-key-that-is-long-enough-1";
+    private static final String NEW_KEY = "new-secret-key-that-is-long-enough-2";
+
+    private StorageProperties properties;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.getToken().setStateless(true);
+        properties.getToken().setSecretKey(OLD_KEY);
+        user = new User();
+        user.setId(42L);
+        user.setLogin("user:42");
+    }
+
+    @Test
+    void testIssuedTokenVerifiesAndTamperingIsRejected() {
+        TokenSigner signer = new TokenSigner(properties);
+        String token = signer.issue(user, LocalDateTime.now().plusHours(1));
+
+        TokenSigner.Claims claims = signer.verify(token).orElseThrow();
+        assertEquals(42L, claims.userId());
+        assertEquals("user:42", claims.login());
+        assertEquals("user:42", claims.toUser().getLogin());
+
+        int at = token.length() - 5;
+        String tampered = token.substring(0, at) + (token.charAt(at) == 'A' ? 'B' : 'A') + token.substring(at + 1);
+        assertTrue(signer.verify(tampered).isEmpty());
+        assertTrue(signer.verify(signer.issue(user, LocalDateTime.now().minusSeconds(1))).isEmpty());
+        assertTrue(signer.verify("not-a-token").isEmpty());
+    }
+
+    @Test
+    void testPreviousKeysAreAcceptedAfterRotation() {
+        String issuedWithOldKey = new TokenSigner(properties).issue(user, LocalDateTime.now().plusHours(1));
+
+        properties.getToken().setSecretKey(NEW_KEY);
+        properties.getToken().setPreviousSecretKeys(List.of(OLD_KEY));
+        TokenSigner rotated = new TokenSigner(properties);
+        assertTrue(rotated.verify(issuedWithOldKey).isPresent());
+
+        properties.getToken().setPreviousSecretKeys(List.of());
+        assertTrue(new TokenSigner(properties).verify(issuedWithOldKey).isEmpty());
+
+        properties.getToken().setSecretKey("short");
+        assertThrows(IllegalStateException.class, () -> new TokenSigner(properties));
+    }
+
+    @Test
+    void testRevocationsAreLoadedAndExpire() {
+        TokenRevocationRepository repository = mock(TokenRevocationRepository.class);
+        LocalDateTime now = LocalDateTime.now();
+        when(repository.findActiveSince(any(), any())).thenReturn(List.of(
+                new TokenRevocation("loaded", 1L, now.plusHours(1)),
+                new TokenRevocation("expiring", 1L, now.plusNanos(1))));
+
+        TokenRevocationList revocations = new TokenRevocationList(repository, properties);
+        revocations.init();
+        revocations.revoke("local", 1L, now.plusHours(1));
+
+        assertTrue(revocations.isRevoked("loaded"));
+        assertTrue(revocations.isRevoked("local"));
+        assertFalse(revocations.isRevoked("active"));
+        verify(repository).save(any(TokenRevocation.class));
+
+        when(repository.findActiveSince(any(), any())).thenReturn(List.of());
+        revocations.refresh();
+
+        assertFalse(revocations.isRevoked("expiring"));
+        assertTrue(revocations.isRevoked("loaded"));
+        assertEquals(2, revocations.size());
+        verify(repository).deleteExpired(any());
+    }
+}
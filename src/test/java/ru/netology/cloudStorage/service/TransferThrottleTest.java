@@ -0,0 +1,107 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cloudStorage.config.StorageProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferThrottleTest {
+
+    private StorageProperties properties;
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.getRateLimit().setEnabled(true);
+        properties.getRateLimit().setBurstMs(0);
+        registry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void testStreamsAreSlowedNotCut() throws Exception {
+        properties.getRateLimit().setUserBytesPerSecond(100_000);
+        TransferThrottle throttle = new TransferThrottle(properties, registry);
+        byte[] data = new byte[10_000];
+        new Random(1).nextBytes(data);
+
+        long started = System.nanoTime();
+        byte[] read;
+        try (InputStream in = throttle.throttle(new ByteArrayInputStream(data), "user1")) {
+            read = in.readAllBytes();
+        }
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        try (OutputStream out = throttle.throttle(sink, "user2")) {
+            out.write(data);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertArrayEquals(data, read);
+        assertArrayEquals(data, sink.toByteArray());
+        // Каждый пользователь ждёт своё: 10 000 байт при 100 000 B/s — 100 мс
+        assertTrue(elapsedMs >= 180, "elapsed " + elapsedMs);
+        assertTrue(registry.get("storage.throttle.wait").tags("kind", "bytes", "scope", "user")
+                .timer().totalTime(TimeUnit.MILLISECONDS) >= 180);
+    }
+
+    @Test
+    void testDisabledLimitsPassStreamsThrough() {
+        properties.getRateLimit().setGlobalBytesPerSecond(100);
+        properties.getRateLimit().setEnabled(false);
+        TransferThrottle throttle = new TransferThrottle(properties, registry);
+        InputStream in = new ByteArrayInputStream(new byte[1]);
+
+        assertFalse(throttle.limitsBytes());
+        assertSame(in, throttle.throttle(in, "user1"));
+    }
+
+    @Test
+    void testRequestsOverMaxWaitAreRejectedAndIdleBucketsEvicted() throws Exception {
+        properties.getRateLimit().setUserRequestsPerSecond(1);
+        properties.getRateLimit().setBurstMs(1000);
+        properties.getRateLimit().setMaxRequestWaitMs(100);
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+        TransferThrottle throttle = new TransferThrottle(properties, registry, now::get);
+
+        assertTrue(throttle.admitRequest("user1"));
+        assertFalse(throttle.admitRequest("user1"));
+        assertTrue(throttle.admitRequest("user2"));
+        assertTrue(throttle.admitRequest(null));
+        assertEquals(1.0, registry.get("storage.throttle.rejected").counter().count());
+
+        throttle.evictIdle();
+        assertEquals(2, throttle.userBuckets());
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        throttle.evictIdle();
+        assertEquals(0, throttle.userBuckets());
+        assertTrue(throttle.admitRequest("user1"));
+    }
+
+    @Test
+    void testGlobalRejectionReturnsUserReservation() throws Exception {
+        properties.getRateLimit().setUserRequestsPerSecond(1);
+        properties.getRateLimit().setGlobalRequestsPerSecond(1);
+        properties.getRateLimit().setBurstMs(1000);
+        properties.getRateLimit().setMaxRequestWaitMs(100);
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+        TransferThrottle throttle = new TransferThrottle(properties, registry, now::get);
+
+        assertTrue(throttle.admitRequest("user1"));
+        assertFalse(throttle.admitRequest("user2"));
+        assertFalse(throttle.admitRequest("user2"));
+
+        // Ведро user2 осталось полным: отказ общего лимита не съел его разрешение
+        throttle.evictIdle();
+        assertEquals(1, throttle.userBuckets());
+    }
+}
@@ -0,0 +1,137 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.File;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.FileRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UploadPipelineTest {
+
+    @TempDir
+    Path root;
+
+    private StorageProperties properties;
+    private FileRepository fileRepository;
+    private FileStorageService fileStorageService;
+    private SimpleMeterRegistry registry;
+    private PreviewStore previewStore;
+    private UploadPipeline pipeline;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StorageProperties();
+        properties.getProcessing().setPreviewPath(root.resolve("previews").toString());
+        properties.getProcessing().setThumbnailSizes(List.of(32, 128));
+        fileRepository = mock(FileRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.resolvePath(any())).thenAnswer(call -> root.resolve(call.<File>getArgument(0).getFilePath()));
+        registry = new SimpleMeterRegistry();
+        previewStore = new PreviewStore(properties);
+        pipeline = pipeline();
+        user = new User();
+        user.setId(1L);
+    }
+
+    @Test
+    void testImageGetsChecksumTypeAndThumbnails() throws Exception {
+        BufferedImage image = new BufferedImage(600, 300, BufferedImage.TYPE_INT_ARGB);
+        Path path = root.resolve("photo-upload.png");
+        ImageIO.write(image, "png", path.toFile());
+        File file = file(7L, "photo.png", path);
+
+        pipeline.process(7L);
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path)));
+        verify(fileRepository).saveProcessing(eq(7L), eq(sha256), eq("image/png"), any());
+        BufferedImage small = ImageIO.read(previewStore.find(7L, 10).orElseThrow().toFile());
+        assertEquals(32, small.getWidth());
+        assertEquals(16, small.getHeight());
+        assertEquals(128, ImageIO.read(previewStore.find(7L, 100).orElseThrow().toFile()).getWidth());
+        assertEquals(1.0, registry.get("storage.processing.stage").tag("stage", "thumbnail").timer().count());
+
+        previewStore.delete(file.getId());
+        assertTrue(previewStore.find(7L, 32).isEmpty());
+    }
+
+    @Test
+    void testFailedStageDoesNotStopOthers() throws Exception {
+        Path path = root.resolve("notes-upload.txt");
+        Files.writeString(path, "plain text");
+        file(8L, "notes.txt", path);
+        ProcessingStage broken = new ProcessingStage() {
+            @Override
+            public String name() {
+                return "broken";
+            }
+
+            @Override
+            public void process(Context context) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        pipeline = new UploadPipeline(fileRepository, fileStorageService, previewStore,
+                List.of(broken, new ContentTypeStage()), properties, registry);
+
+        pipeline.process(8L);
+
+        verify(fileRepository).saveProcessing(eq(8L), eq(null), eq("text/plain"), any());
+        assertEquals(1.0, registry.get("storage.processing.failures").tag("stage", "broken").counter().count());
+        assertTrue(previewStore.find(8L, 32).isEmpty());
+    }
+
+    @Test
+    void testFullQueueDropsAndSweepRequeues() {
+        properties.getProcessing().setQueueCapacity(1);
+        registry = new SimpleMeterRegistry();
+        pipeline = pipeline();
+
+        assertTrue(pipeline.submit(1L, 0));
+        assertTrue(pipeline.submit(1L, 0));
+        assertFalse(pipeline.submit(2L, 0));
+        assertEquals(1.0, registry.get("storage.processing.dropped").counter().count());
+        assertEquals(1.0, registry.get("storage.processing.queue").gauge().value());
+
+        when(fileRepository.findUnprocessed(any(), any())).thenReturn(List.of(2L, 3L));
+        assertEquals(0, pipeline.sweep());
+
+        properties.getProcessing().setQueueCapacity(10);
+        registry = new SimpleMeterRegistry();
+        pipeline = pipeline();
+        pipeline.submit(3L, 0);
+        assertEquals(1, pipeline.sweep());
+        assertEquals(2, pipeline.queueSize());
+    }
+
+    private UploadPipeline pipeline() {
+        return new UploadPipeline(fileRepository, fileStorageService, previewStore,
+                List.of(new ChecksumStage(new BufferPool(properties)), new ContentTypeStage(),
+                        new ThumbnailStage(previewStore, properties)),
+                properties, registry);
+    }
+
+    private File file(Long id, String filename, Path path) throws Exception {
+        File file = new File(filename, Files.size(path), path.getFileName().toString(), user);
+        file.setId(id);
+        when(fileRepository.findById(id)).thenReturn(Optional.of(file));
+        return file;
+    }
+}
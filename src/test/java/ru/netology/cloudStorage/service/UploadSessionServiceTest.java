@@ -0,0 +1,107 @@
+package ru.netology.cloudStorage.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.netology.cloudStorage.config.StorageProperties;
+import ru.netology.cloudStorage.entity.UploadSession;
+import ru.netology.cloudStorage.entity.User;
+import ru.netology.cloudStorage.repository.UploadSessionRepository;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class UploadSessionServiceTest {
+
+    private static final int CHUNK = 64 * 1024;
+
+    @TempDir
+    Path tempDir;
+
+    private UploadSessionRepository sessionRepository;
+    private FileStorageService fileStorageService;
+    private UploadSessionService service;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties properties = new StorageProperties();
+        properties.setPath(tempDir.toString());
+        sessionRepository = mock(UploadSessionRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        service = new UploadSessionService(sessionRepository, fileStorageService, properties,
+                new BufferPool(properties), new DiskIoLimiter(properties),
+                new StorageMetrics(new SimpleMeterRegistry(), properties), mock(QuotaService.class),
+                new TransferThrottle(properties, new SimpleMeterRegistry()));
+        service.init();
+
+        user = new User();
+        user.setId(1L);
+        user.setLogin("user1");
+        when(sessionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testChunksAreWrittenAtTheirOffsets() throws Exception {
+        byte[] content = content(CHUNK * 2 + 10);
+        UploadSession session = service.create("big.bin", content.length, CHUNK, user);
+        when(sessionRepository.findByIdAndUser(session.getId(), user)).thenReturn(Optional.of(session));
+
+        // части приходят не по порядку
+        for (int index : new int[]{2, 0, 1}) {
+            int from = index * CHUNK;
+            int length = Math.min(CHUNK, content.length - from);
+            service.writeChunk(session.getId(), index, length,
+                    new ByteArrayInputStream(content, from, length), user);
+            verify(sessionRepository).markChunkReceived(session.getId(), index);
+        }
+
+        Path data = tempDir.resolve(UploadSessionService.SESSION_DIR).resolve(session.getId() + ".part");
+        assertArrayEquals(content, Files.readAllBytes(data));
+    }
+
+    @Test
+    void testChunkWithWrongLengthIsRejected() throws Exception {
+        UploadSession session = service.create("big.bin", CHUNK + 1, CHUNK, user);
+        when(sessionRepository.findByIdAndUser(session.getId(), user)).thenReturn(Optional.of(session));
+
+        byte[] shortChunk = "too short".getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(session.getId(), 0, -1,
+                new ByteArrayInputStream(shortChunk), user));
+        assertThrows(IllegalArgumentException.class, () -> service.writeChunk(session.getId(), 2, 1,
+                new ByteArrayInputStream(new byte[1]), user));
+        verify(sessionRepository, never()).markChunkReceived(any(), eq(0));
+    }
+
+    @Test
+    void testIncompleteSessionCannotBeCommitted() throws Exception {
+        UploadSession session = service.create("big.bin", CHUNK * 3, CHUNK, user);
+        when(sessionRepository.findByIdAndUser(session.getId(), user)).thenReturn(Optional.of(session));
+        when(sessionRepository.countReceivedChunks(session.getId())).thenReturn(2L);
+
+        assertThrows(IllegalStateException.class, () -> service.commit(session.getId(), user));
+        verify(fileStorageService, never()).storeAssembled(any(), any(), any());
+
+        when(sessionRepository.countReceivedChunks(session.getId())).thenReturn(3L);
+        service.commit(session.getId(), user);
+        verify(fileStorageService).storeAssembled(any(), eq("big.bin"), eq(user));
+        verify(sessionRepository).delete(session);
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + i / CHUNK);
+        }
+        return content;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.netology.cloudStorage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeTest {
+
+    @Test
+    void testParsesSingleAndOpenRanges() {
+        assertEquals(List.of(new ByteRange(0, 99)), ByteRange.parse("bytes=0-99", 1000));
+        assertEquals(List.of(new ByteRange(900, 999)), ByteRange.parse("bytes=900-", 1000));
+        assertEquals(List.of(new ByteRange(990, 999)), ByteRange.parse("bytes=-10", 1000));
+        assertEquals(List.of(new ByteRange(500, 999)), ByteRange.parse("bytes=500-5000", 1000));
+    }
+
+    @Test
+    void testParsesMultipleRanges() {
+        assertEquals(List.of(new ByteRange(0, 0), new ByteRange(10, 19)),
+                ByteRange.parse("bytes=0-0, 10-19", 1000));
+    }
+
+    @Test
+    void testUnsatisfiableRangesAreDropped() {
+        assertEquals(List.of(), ByteRange.parse("bytes=1000-1100", 1000));
+        assertEquals(List.of(new ByteRange(0, 9)), ByteRange.parse("bytes=0-9,2000-", 1000));
+    }
+
+    @Test
+    void testInvalidHeaderIsIgnored() {
+        assertNull(ByteRange.parse("items=0-1", 1000));
+        assertNull(ByteRange.parse("bytes=5-1", 1000));
+        assertNull(ByteRange.parse("bytes=abc", 1000));
+    }
+}
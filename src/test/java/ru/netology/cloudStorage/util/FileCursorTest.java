@@ -0,0 +1,33 @@
+package ru.netology.cloudStorage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCursorTest {
+
+    @Test
+    void testRoundTrip() {
+        FileCursor cursor = new FileCursor(FileSortKey.DATE, true, "2024-05-01T10:15:30.123456", 42L);
+
+        FileCursor decoded = FileCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+        assertEquals(LocalDateTime.parse("2024-05-01T10:15:30.123456"), decoded.typedValue());
+    }
+
+    @Test
+    void testNameWithSeparatorsSurvivesRoundTrip() {
+        FileCursor cursor = new FileCursor(FileSortKey.NAME, false, "отчёт\nфинал.txt", 7L);
+
+        assertEquals(cursor, FileCursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void testGarbageIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FileCursor.decode("not a cursor"));
+        assertThrows(IllegalArgumentException.class, () -> FileSortKey.parse("owner"));
+    }
+}
@@ -0,0 +1,93 @@
+package ru.netology.cloudStorage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamReaderTest {
+
+    private static final String BOUNDARY = "----boundary42";
+
+    @Test
+    void testReadsFieldAndFileParts() throws IOException {
+        String body = "preamble\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"hash\"\r\n\r\n"
+                + "abc\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.txt\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + "Test content\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+
+        MultipartStreamReader reader = new MultipartStreamReader(
+                stream(body.getBytes(StandardCharsets.UTF_8)), BOUNDARY, new byte[128]);
+
+        MultipartStreamReader.Part hash = reader.nextPart();
+        assertEquals("hash", hash.getName());
+        assertEquals("abc", new String(hash.getBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        MultipartStreamReader.Part file = reader.nextPart();
+        assertEquals("file", file.getName());
+        assertEquals("test.txt", file.getFilename());
+        assertEquals("text/plain", file.getContentType());
+        assertEquals("Test content", new String(file.getBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    void testStreamsBinaryPartLargerThanBuffer() throws IOException {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            // Часто встречающиеся CR/LF и '-' проверяют частичные совпадения с разделителем
+            content[i] = (byte) "\r\n--x".charAt(i % 5);
+        }
+        byte[] head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"blob.bin\"\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] tail = ("\r\n--" + BOUNDARY + "--").getBytes(StandardCharsets.US_ASCII);
+
+        byte[] body = new byte[head.length + content.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(content, 0, body, head.length, content.length);
+        System.arraycopy(tail, 0, body, head.length + content.length, tail.length);
+
+        MultipartStreamReader reader = new MultipartStreamReader(stream(body), BOUNDARY, new byte[256]);
+        MultipartStreamReader.Part part = reader.findPart("file");
+
+        assertNotNull(part);
+        assertTrue(Arrays.equals(content, part.getBody().readAllBytes()));
+        assertNull(reader.nextPart());
+    }
+
+    @Test
+    void testTruncatedBodyFails() {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"\r\n\r\n"
+                + "partial";
+
+        MultipartStreamReader reader = new MultipartStreamReader(
+                stream(body.getBytes(StandardCharsets.UTF_8)), BOUNDARY, new byte[64]);
+
+        assertThrows(IOException.class, () -> reader.nextPart().getBody().readAllBytes());
+    }
+
+    /**
+     * Поток, отдающий данные маленькими порциями, как медленный сокет.
+     */
+    private static InputStream stream(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package ru.netology.cloudStorage.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCursorTest {
+
+    @Test
+    void testRoundTripKeepsScoreExactly() {
+        float score = 0.2857143f;
+        SearchCursor cursor = new SearchCursor(true, score, "отчёт\n2024.pdf");
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+        assertEquals(Float.floatToIntBits(score), Float.floatToIntBits(decoded.score()));
+        assertFalse(SearchCursor.decode(new SearchCursor(false, 0, "a.txt").encode()).byRelevance());
+    }
+
+    @Test
+    void testMalformedCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(
+                new FileCursor(FileSortKey.NAME, false, "a.txt", 1).encode()));
+    }
+}
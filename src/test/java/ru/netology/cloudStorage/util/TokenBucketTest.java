@@ -0,0 +1,81 @@
+package ru.netology.cloudStorage.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MS);
+
+    @Test
+    void testBurstIsFreeThenDebtTurnsIntoWait() {
+        TokenBucket bucket = new TokenBucket(1000, 1000, now::get);
+
+        assertTrue(bucket.isFull());
+        assertEquals(0, bucket.reserve(1000));
+        assertEquals(500 * MS, bucket.reserve(500));
+        assertFalse(bucket.isFull());
+
+        now.addAndGet(1500 * MS);
+        assertEquals(0, bucket.reserve(1));
+        // Долгий простой не копит больше burst
+        now.addAndGet(60_000 * MS);
+        assertTrue(bucket.isFull());
+        assertEquals(0, bucket.reserve(1000));
+        assertEquals(MS, bucket.reserve(1));
+    }
+
+    @Test
+    void testReservationOverMaxWaitLeavesStateUntouched() {
+        TokenBucket bucket = new TokenBucket(10, 0, now::get);
+
+        assertEquals(100 * MS, bucket.reserve(1, 100 * MS));
+        assertEquals(-1, bucket.reserve(1, 100 * MS));
+        assertEquals(200 * MS, bucket.reserve(1));
+    }
+
+    @Test
+    void testReleaseReturnsUnusedReservation() {
+        TokenBucket bucket = new TokenBucket(10, 0, now::get);
+
+        assertEquals(100 * MS, bucket.reserve(1));
+        bucket.release(1);
+        assertTrue(bucket.isFull());
+        assertEquals(100 * MS, bucket.reserve(1));
+    }
+
+    @Test
+    void testConcurrentReservationsAreNotLost() throws Exception {
+        TokenBucket bucket = new TokenBucket(1_000_000, 0, now::get);
+        int threads = 8;
+        int perThread = 10_000;
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < perThread; j++) {
+                        bucket.reserve(1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        // 1 мкс на разрешение при неподвижных часах: долг равен сумме всех резервирований
+        assertEquals((long) threads * perThread * 1000, bucket.reserve(0));
+    }
+}